@@ -0,0 +1,75 @@
+package dev.nightowl.mailjudge.bake;
+
+import dev.nightowl.mailjudge.util.DisposableListRefresher;
+import dev.nightowl.mailjudge.util.DomainIndex;
+import lombok.extern.java.Log;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+
+/**
+ * Build-time tool that compiles the disposable domain list into a {@link DomainIndex} snapshot,
+ * which the build packs into the jar as {@code /dev/nightowl/mailjudge/disposable-domains.idx}.
+ * It lives in the {@code bake} source set and is not part of the library.
+ * <p>
+ * Usage: {@code DisposableSnapshotBaker <output file> <list URL or file>}. If the list cannot be
+ * downloaded, a warning is logged and no snapshot is written, so offline builds still succeed;
+ * publishing checks that the snapshot exists.
+ */
+@Log
+public final class DisposableSnapshotBaker {
+
+    private DisposableSnapshotBaker() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            throw new IllegalArgumentException("Usage: DisposableSnapshotBaker <output file> <list URL or file>");
+        }
+        Path output = Paths.get(args[0]);
+        Files.createDirectories(output.toAbsolutePath().getParent());
+        if (!bake(args[1], output)) {
+            Files.deleteIfExists(output);
+        }
+    }
+
+    /**
+     * Compiles the list from a URL or a local file into a snapshot.
+     *
+     * @param source URL of the list, or path of a local copy
+     * @param output the snapshot file to write
+     * @return true if the snapshot was written, false if the list could not be downloaded
+     * @throws IOException if a local list cannot be read or the snapshot cannot be written
+     */
+    private static boolean bake(String source, Path output) throws IOException {
+        if (!source.contains("://")) {
+            DomainIndex index = DomainIndex.of(Files.readAllLines(Paths.get(source), StandardCharsets.UTF_8));
+            index.writeTo(output);
+            log.info("Baked " + index.size() + " disposable domains into " + output);
+            return true;
+        }
+
+        Path workDir = Files.createTempDirectory("mailjudge-bake");
+        try (DisposableListRefresher refresher = new DisposableListRefresher(source, workDir, Duration.ZERO, null)) {
+            refresher.refresh();
+            DomainIndex index = refresher.getIndex();
+            index.writeTo(output);
+            log.info("Baked " + index.size() + " disposable domains into " + output);
+            return true;
+        } catch (IOException e) {
+            log.warning("Failed to download disposable domains, not embedding a list: " + e.getMessage());
+            return false;
+        } finally {
+            try (var files = Files.list(workDir)) {
+                for (Path file : (Iterable<Path>) files::iterator) {
+                    Files.deleteIfExists(file);
+                }
+            }
+            Files.deleteIfExists(workDir);
+        }
+    }
+}
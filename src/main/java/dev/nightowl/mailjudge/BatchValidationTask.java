@@ -0,0 +1,68 @@
+package dev.nightowl.mailjudge;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Runs a batch in parallel, splitting the index range in halves until the ranges are small enough
+ * to be worth handing to another worker. Split points of address batches are multiples of 64, so a leaf
+ * never shares a word of a validity bitset with another leaf.
+ */
+class BatchValidationTask extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+    private static final int MIN_CHUNK = 256;
+
+    /**
+     * Validates the addresses in {@code [from, to)} and stores their results by index.
+     * Called once per leaf, so implementations can set up scratch state for the whole range.
+     */
+    @FunctionalInterface
+    interface RangeValidator {
+        void validate(int from, int to);
+    }
+
+    private final RangeValidator validator;
+    private final int chunk;
+    private final int from;
+    private final int to;
+
+    private BatchValidationTask(RangeValidator validator, int chunk, int from, int to) {
+        this.validator = validator;
+        this.chunk = chunk;
+        this.from = from;
+        this.to = to;
+    }
+
+    /**
+     * Validates {@code size} addresses on the given pool, or on the calling thread
+     * when the batch is too small to be worth splitting.
+     *
+     * @param size      number of addresses in the batch
+     * @param pool      the pool to run on
+     * @param validator validates one range of the batch
+     */
+    static void run(int size, ForkJoinPool pool, RangeValidator validator) {
+        // A few chunks per worker leaves room for work stealing to even out the load
+        int chunk = Math.max(MIN_CHUNK, size / (pool.getParallelism() * 4));
+        if (size <= chunk) {
+            validator.validate(0, size);
+        } else {
+            pool.invoke(new BatchValidationTask(validator, chunk, 0, size));
+        }
+    }
+
+    @Override
+    protected void compute() {
+        int middle = (from + to) >>> 1;
+        if (chunk >= 64) {
+            middle &= ~63;
+        }
+        if (to - from <= chunk || middle <= from) {
+            validator.validate(from, to);
+            return;
+        }
+
+        invokeAll(new BatchValidationTask(validator, chunk, from, middle),
+                new BatchValidationTask(validator, chunk, middle, to));
+    }
+}
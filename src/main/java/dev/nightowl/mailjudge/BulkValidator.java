@@ -0,0 +1,355 @@
+package dev.nightowl.mailjudge;
+
+import dev.nightowl.mailjudge.rules.Ruleset;
+import dev.nightowl.mailjudge.rules.Rulesets;
+import dev.nightowl.mailjudge.util.Utf8Bytes;
+import lombok.extern.java.Log;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Validates files of email addresses, one per line, as plain lists or single-column CSV.
+ * <p>
+ * The input is memory-mapped in line-aligned chunks that are validated in parallel, each as a batch, so
+ * network rules run once per domain of the chunk. Valid and invalid rows are copied unchanged to two output
+ * files, in input order. Rows whose network rules could not reach a verdict, such as on a failed DNS lookup,
+ * go to a third output if one is given and to the invalid rows otherwise. Only a few chunks are in flight at
+ * a time, so memory use does not grow with the size of the file. Lines may end in {@code \n} or
+ * {@code \r\n}, and may be at most 64 KiB long.
+ * A row is validated without surrounding whitespace or double quotes; blank rows are skipped.
+ * The first row of a {@code .csv} file is a header if it has no {@code @}; it is copied to every output.
+ * <p>
+ * Usage from the command line:
+ * {@code BulkValidator <input> <valid output> <invalid output> [standard|strict|noDisposable|complete]
+ * [inconclusive output]}
+ */
+@Log
+public final class BulkValidator {
+    private static final int DEFAULT_CHUNK_SIZE = 4 * 1024 * 1024;
+    private static final int MAX_LINE_LENGTH = 64 * 1024;
+    private static final String USAGE = "Usage: BulkValidator <input> <valid output> <invalid output>"
+            + " [standard|strict|noDisposable|complete] [inconclusive output]";
+
+    private final MailJudge judge;
+    private final int chunkSize;
+
+    /**
+     * @param ruleset the ruleset to validate with
+     */
+    public BulkValidator(Ruleset ruleset) {
+        this(MailJudge.withRuleset(ruleset), DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * @param judge     the judge to validate with
+     * @param chunkSize bytes of input per chunk, rounded up to whole lines
+     */
+    public BulkValidator(MailJudge judge, int chunkSize) {
+        if (chunkSize <= 0 || chunkSize > Integer.MAX_VALUE - MAX_LINE_LENGTH) {
+            throw new IllegalArgumentException("chunkSize must be positive and leave room for a line in a mapping");
+        }
+        this.judge = judge;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Validates a file on the common {@link ForkJoinPool}.
+     *
+     * @param input   the file of addresses
+     * @param valid   file to write the valid rows to, replaced if it exists
+     * @param invalid file to write the invalid rows to, replaced if it exists
+     * @return the row counts
+     * @throws IOException if a file cannot be read or written, or has a line that is too long
+     */
+    public Summary validate(Path input, Path valid, Path invalid) throws IOException {
+        return validate(input, valid, invalid, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Validates a file on the given pool.
+     *
+     * @param input   the file of addresses
+     * @param valid   file to write the valid rows to, replaced if it exists
+     * @param invalid file to write the invalid rows to, replaced if it exists
+     * @param pool    the pool to validate the chunks on
+     * @return the row counts
+     * @throws IOException if a file cannot be read or written, or has a line that is too long
+     */
+    public Summary validate(Path input, Path valid, Path invalid, ForkJoinPool pool) throws IOException {
+        return validate(input, valid, invalid, null, pool);
+    }
+
+    /**
+     * Validates a file on the given pool, writing rows whose network rules could not reach a verdict
+     * to a file of their own, for a later retry.
+     *
+     * @param input        the file of addresses
+     * @param valid        file to write the valid rows to, replaced if it exists
+     * @param invalid      file to write the invalid rows to, replaced if it exists
+     * @param inconclusive file to write the inconclusive rows to, replaced if it exists, or null to write
+     *                     them with the invalid rows
+     * @param pool         the pool to validate the chunks on
+     * @return the row counts
+     * @throws IOException if a file cannot be read or written, or has a line that is too long
+     */
+    public Summary validate(Path input, Path valid, Path invalid, Path inconclusive, ForkJoinPool pool)
+            throws IOException {
+        try (FileChannel in = FileChannel.open(input, StandardOpenOption.READ);
+             FileChannel validOut = openOutput(valid);
+             FileChannel invalidOut = openOutput(invalid);
+             FileChannel inconclusiveOut = inconclusive == null ? null : openOutput(inconclusive)) {
+            long size = in.size();
+            long start = 0;
+            if (input.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".csv")) {
+                start = copyHeader(in, size, validOut, invalidOut, inconclusiveOut);
+            }
+
+            int window = pool.getParallelism() * 2;
+            boolean separate = inconclusiveOut != null;
+            ArrayDeque<ForkJoinTask<Chunk>> pending = new ArrayDeque<>();
+            long validRows = 0;
+            long invalidRows = 0;
+            long inconclusiveRows = 0;
+            while (start < size || !pending.isEmpty()) {
+                while (start < size && pending.size() < window) {
+                    long end = lineEnd(in, Math.min(size, start + chunkSize), size);
+                    MappedByteBuffer mapped = in.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+                    pending.add(pool.submit(() -> validateChunk(mapped, separate, pool)));
+                    start = end;
+                }
+                Chunk chunk = pending.remove().join();
+                writeFully(validOut, chunk.valid.toBuffer());
+                writeFully(invalidOut, chunk.invalid.toBuffer());
+                if (separate) {
+                    writeFully(inconclusiveOut, chunk.inconclusive.toBuffer());
+                }
+                validRows += chunk.validRows;
+                invalidRows += chunk.invalidRows;
+                inconclusiveRows += chunk.inconclusiveRows;
+            }
+            return new Summary(validRows, invalidRows, inconclusiveRows);
+        }
+    }
+
+    /**
+     * Copies the first row to every output if it is a CSV header, a row without an {@code @}.
+     *
+     * @return the offset of the first row to validate
+     */
+    private static long copyHeader(FileChannel in, long size, FileChannel... outputs) throws IOException {
+        long end = lineEnd(in, 0, size);
+        ByteBuffer line = ByteBuffer.allocate((int) end);
+        while (line.hasRemaining() && in.read(line, line.position()) > 0) {
+            // Reads until the line is complete
+        }
+        line.flip();
+        int rowEnd = line.limit();
+        while (rowEnd > 0 && (line.get(rowEnd - 1) == '\n' || line.get(rowEnd - 1) == '\r')) {
+            rowEnd--;
+        }
+        for (int i = 0; i < rowEnd; i++) {
+            if (line.get(i) == '@') {
+                return 0;
+            }
+        }
+        Rows header = new Rows(rowEnd + 1);
+        header.append(line, 0, rowEnd);
+        for (FileChannel out : outputs) {
+            if (out != null) {
+                writeFully(out, header.toBuffer());
+            }
+        }
+        return end;
+    }
+
+    private static FileChannel openOutput(Path path) throws IOException {
+        return FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    private static void writeFully(FileChannel out, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+    }
+
+    /**
+     * @return the offset just past the first line break at or after {@code offset}, or the file size
+     * @throws IOException if there is no line break within {@value #MAX_LINE_LENGTH} bytes
+     */
+    private static long lineEnd(FileChannel in, long offset, long size) throws IOException {
+        ByteBuffer probe = ByteBuffer.allocate(4096);
+        long limit = Math.min(size, offset + MAX_LINE_LENGTH);
+        for (long position = offset; position < limit; ) {
+            probe.clear().limit((int) Math.min(probe.capacity(), limit - position));
+            int read = in.read(probe, position);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                if (probe.get(i) == '\n') {
+                    return position + i + 1;
+                }
+            }
+            position += read;
+        }
+        if (limit < size) {
+            throw new IOException("Line longer than " + MAX_LINE_LENGTH + " bytes at offset " + offset);
+        }
+        return size;
+    }
+
+    private Chunk validateChunk(ByteBuffer buffer, boolean separateInconclusive, ForkJoinPool pool) {
+        Chunk chunk = new Chunk(buffer.limit(), separateInconclusive);
+        List<CharSequence> emails = new ArrayList<>();
+        // Line start and row end of every address, to copy the row unchanged
+        int[] bounds = new int[64];
+        int limit = buffer.limit();
+        for (int lineStart = 0; lineStart < limit; ) {
+            int lineEnd = lineStart;
+            while (lineEnd < limit && buffer.get(lineEnd) != '\n') {
+                lineEnd++;
+            }
+            int next = lineEnd + 1;
+            int rowEnd = lineEnd > lineStart && buffer.get(lineEnd - 1) == '\r' ? lineEnd - 1 : lineEnd;
+
+            int from = lineStart;
+            int to = rowEnd;
+            while (from < to && isBlank(buffer.get(from))) {
+                from++;
+            }
+            while (to > from && isBlank(buffer.get(to - 1))) {
+                to--;
+            }
+            if (to - from >= 2 && buffer.get(from) == '"' && buffer.get(to - 1) == '"') {
+                from++;
+                to--;
+            }
+
+            if (from < to) {
+                if (2 * emails.size() + 2 > bounds.length) {
+                    bounds = Arrays.copyOf(bounds, bounds.length * 2);
+                }
+                bounds[2 * emails.size()] = lineStart;
+                bounds[2 * emails.size() + 1] = rowEnd;
+                emails.add(Utf8Bytes.view(buffer, from, to - from));
+            }
+            lineStart = next;
+        }
+
+        ValidationResults results = judge.validateAllCompact(emails, pool);
+        for (int i = 0; i < emails.size(); i++) {
+            int lineStart = bounds[2 * i];
+            int rowEnd = bounds[2 * i + 1];
+            if (results.isValid(i)) {
+                chunk.valid.append(buffer, lineStart, rowEnd);
+                chunk.validRows++;
+            } else if (results.isInconclusive(i)) {
+                chunk.inconclusive.append(buffer, lineStart, rowEnd);
+                chunk.inconclusiveRows++;
+            } else {
+                chunk.invalid.append(buffer, lineStart, rowEnd);
+                chunk.invalidRows++;
+            }
+        }
+        return chunk;
+    }
+
+    private static boolean isBlank(byte b) {
+        return b == ' ' || b == '\t';
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 3 || args.length > 5) {
+            System.err.println(USAGE);
+            System.exit(2);
+        }
+        Ruleset ruleset = switch (args.length >= 4 ? args[3] : "standard") {
+            case "standard" -> Rulesets.standard();
+            case "strict" -> Rulesets.strict();
+            case "noDisposable" -> Rulesets.noDisposable();
+            case "complete" -> Rulesets.complete();
+            default -> null;
+        };
+        if (ruleset == null) {
+            System.err.println("Unknown ruleset: " + args[3]);
+            System.err.println(USAGE);
+            System.exit(2);
+        }
+
+        long start = System.nanoTime();
+        Summary summary = new BulkValidator(ruleset).validate(Paths.get(args[0]), Paths.get(args[1]),
+                Paths.get(args[2]), args.length == 5 ? Paths.get(args[4]) : null, ForkJoinPool.commonPool());
+        log.info(String.format("Validated %d rows in %d ms: %d valid, %d invalid, %d inconclusive",
+                summary.valid() + summary.invalid() + summary.inconclusive(), (System.nanoTime() - start) / 1_000_000,
+                summary.valid(), summary.invalid(), summary.inconclusive()));
+    }
+
+    /**
+     * Row counts of a validated file; blank rows and a CSV header are not counted.
+     *
+     * @param valid        number of valid rows
+     * @param invalid      number of invalid rows
+     * @param inconclusive number of rows whose network rules could not reach a verdict
+     */
+    public record Summary(long valid, long invalid, long inconclusive) {
+    }
+
+    /**
+     * Output of one chunk, kept until the chunks before it are written.
+     */
+    private static final class Chunk {
+        private final Rows valid;
+        private final Rows invalid;
+        private final Rows inconclusive;
+        private long validRows;
+        private long invalidRows;
+        private long inconclusiveRows;
+
+        private Chunk(int inputSize, boolean separateInconclusive) {
+            // Most rows are usually valid; every buffer grows if not
+            this.valid = new Rows(inputSize);
+            this.invalid = new Rows(Math.max(64, inputSize / 8));
+            this.inconclusive = separateInconclusive ? new Rows(64) : invalid;
+        }
+    }
+
+    /**
+     * Growable buffer of rows, each followed by a line break.
+     */
+    private static final class Rows {
+        private byte[] bytes;
+        private int size;
+
+        private Rows(int capacity) {
+            this.bytes = new byte[Math.max(capacity, 64)];
+        }
+
+        private void append(ByteBuffer buffer, int from, int to) {
+            int length = to - from;
+            if (size + length + 1 > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + length + 1));
+            }
+            buffer.get(from, bytes, size, length);
+            size += length;
+            bytes[size++] = '\n';
+        }
+
+        private ByteBuffer toBuffer() {
+            return ByteBuffer.wrap(bytes, 0, size);
+        }
+    }
+}
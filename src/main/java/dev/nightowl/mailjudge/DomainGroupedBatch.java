@@ -0,0 +1,265 @@
+package dev.nightowl.mailjudge;
+
+import dev.nightowl.mailjudge.rules.AsyncRule;
+import dev.nightowl.mailjudge.rules.CostTier;
+import dev.nightowl.mailjudge.rules.ParsedEmail;
+import dev.nightowl.mailjudge.rules.Rule;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Validates a batch with domain-scoped rules run once per distinct domain.
+ * <p>
+ * The first pass runs the per-address rules on every row and groups the rows by
+ * {@linkplain ParsedEmail#getNormalizedDomain() normalized domain}, which only folds ASCII case, so
+ * no group mixes domains that a domain-scoped rule may judge differently.
+ * The second pass runs the {@linkplain Rule#isDomainScoped() domain-scoped} rules once per group,
+ * on any address of the group: the other rules across the pool, then the network rules without blocking
+ * its workers. {@link AsyncRule}s are started for up to {@value #MAX_IN_FLIGHT} groups at a time, and
+ * blocking network rules run on the network executor; the resolver's own limiter, if any, decides how many
+ * queries are sent at once. The last pass combines both verdicts for every row.
+ * Rules run by {@linkplain Rule#getCostTier() cost tier}, as when validating row by row, so the results are the same. In quick mode a group only runs the domain
+ * rules that come before the first failure of at least one of its rows, and network rules only run for
+ * a group if at least one of its rows passes every other rule.
+ */
+final class DomainGroupedBatch {
+    private static final int MAX_IN_FLIGHT = 256;
+
+    private final List<Rule> rules;
+    private final int[] order;
+    private final long domainScoped;
+    private final long network;
+    private final int firstNetwork;
+    private final boolean quick;
+    private final Executor networkExecutor;
+
+    /**
+     * @param rules           the rules, at most 64, with every network rule domain-scoped
+     * @param quick           stop at the first failing rule of every address
+     * @param networkExecutor runs network rules that can only block
+     */
+    DomainGroupedBatch(List<Rule> rules, boolean quick, Executor networkExecutor) {
+        this.rules = rules;
+        this.quick = quick;
+        this.networkExecutor = networkExecutor;
+
+        // Masks below are over ranks, the positions of the rules sorted by cost tier
+        this.order = new int[rules.size()];
+        int rank = 0;
+        long scoped = 0;
+        long networkRules = 0;
+        int first = rules.size();
+        for (CostTier tier : CostTier.values()) {
+            for (int i = 0; i < rules.size(); i++) {
+                Rule rule = rules.get(i);
+                if (rule.getCostTier() != tier) {
+                    continue;
+                }
+                if (rule.isDomainScoped()) {
+                    scoped |= 1L << rank;
+                }
+                if (tier == CostTier.NETWORK) {
+                    networkRules |= 1L << rank;
+                    first = Math.min(first, rank);
+                }
+                order[rank++] = i;
+            }
+        }
+        this.domainScoped = scoped;
+        this.network = networkRules;
+        this.firstNetwork = first;
+    }
+
+    /**
+     * Verdicts of a batch, in input order.
+     *
+     * @param failures bit mask of the failing rule positions for every address
+     * @param errors   for every address that passed every other rule but whose network rules could not reach
+     *                 a verdict, the error of its lookup; null for every other address
+     */
+    record Outcome(long[] failures, Throwable[] errors) {
+    }
+
+    /**
+     * Validates the batch. Null and empty addresses are skipped and get a mask of 0.
+     *
+     * @param emails the email addresses
+     * @param pool   the pool to run on
+     * @return the verdicts of every address
+     */
+    Outcome validate(List<? extends CharSequence> emails, ForkJoinPool pool) {
+        int size = emails.size();
+        long[] failures = new long[size];
+        Throwable[] errors = new Throwable[size];
+        DomainGroup[] groupOf = new DomainGroup[size];
+        ConcurrentHashMap<String, DomainGroup> groups = new ConcurrentHashMap<>();
+
+        BatchValidationTask.run(size, pool, (from, to) -> {
+            ParsedEmail scratch = new ParsedEmail();
+            for (int i = from; i < to; i++) {
+                CharSequence email = emails.get(i);
+                if (email == null || email.length() == 0) {
+                    continue;
+                }
+                ParsedEmail parsed = scratch.reset(email);
+                if (!parsed.hasAt()) {
+                    // No domain to share verdicts on
+                    failures[i] = evaluate(parsed, ~0L, rules.size());
+                    continue;
+                }
+                long rowFailures = evaluate(parsed, ~domainScoped, rules.size());
+                failures[i] = rowFailures;
+                DomainGroup group = groups.computeIfAbsent(parsed.getNormalizedDomain(), key -> new DomainGroup(email));
+                if (rowFailures == 0) {
+                    group.need(rules.size());
+                } else {
+                    group.need(quick ? Long.numberOfTrailingZeros(rowFailures) : firstNetwork);
+                }
+                groupOf[i] = group;
+            }
+        });
+
+        List<DomainGroup> distinct = new ArrayList<>(groups.values());
+        BatchValidationTask.run(distinct.size(), pool, (from, to) -> {
+            ParsedEmail scratch = new ParsedEmail();
+            for (int i = from; i < to; i++) {
+                DomainGroup group = distinct.get(i);
+                group.failures = evaluate(scratch.reset(group.representative), domainScoped & ~network,
+                        group.needed);
+            }
+        });
+
+        Semaphore slots = new Semaphore(MAX_IN_FLIGHT);
+        List<CompletableFuture<Void>> lookups = new ArrayList<>();
+        for (DomainGroup group : distinct) {
+            if (group.failures != 0 || group.needed <= firstNetwork) {
+                continue;
+            }
+            slots.acquireUninterruptibly();
+            lookups.add(evaluateNetwork(ParsedEmail.parse(group.representative), group.needed)
+                    .handle((networkFailures, error) -> {
+                        slots.release();
+                        if (error == null) {
+                            group.failures = networkFailures;
+                        } else {
+                            group.error = error;
+                        }
+                        return null;
+                    }));
+        }
+        CompletableFuture.allOf(lookups.toArray(new CompletableFuture<?>[0])).join();
+
+        BatchValidationTask.run(size, pool, (from, to) -> {
+            for (int i = from; i < to; i++) {
+                long combined = failures[i];
+                if (groupOf[i] != null && combined == 0 && groupOf[i].error != null) {
+                    errors[i] = groupOf[i].error;
+                } else if (groupOf[i] != null) {
+                    combined |= groupOf[i].failures;
+                    if ((combined & ~network) != 0) {
+                        // The group ran network rules for other rows; this one fails a cheaper rule
+                        combined &= ~network;
+                    }
+                    combined = quick ? combined & -combined : combined;
+                }
+                failures[i] = toPositions(combined);
+            }
+        });
+        return new Outcome(failures, errors);
+    }
+
+    /**
+     * Runs the selected rules at ranks below {@code limit}, in order. Network rules only run if no other
+     * selected rule failed.
+     */
+    private long evaluate(ParsedEmail parsed, long selected, int limit) {
+        long failures = 0;
+        for (int rank = 0; rank < limit; rank++) {
+            long bit = 1L << rank;
+            if ((selected & bit) == 0) {
+                continue;
+            }
+            if ((network & bit) != 0 && failures != 0) {
+                break;
+            }
+            if (!rules.get(order[rank]).validate(parsed)) {
+                failures |= bit;
+                if (quick) {
+                    break;
+                }
+            }
+        }
+        return failures;
+    }
+
+    /**
+     * Starts the network rules at ranks below {@code limit} at once. A rule that fails decides the verdict;
+     * otherwise a rule that could not reach one, such as on a failed DNS lookup, completes the returned
+     * future exceptionally and the rows of the group that pass every other rule are inconclusive.
+     *
+     * @param parsed view of the address, not reused while the rules are pending
+     * @return future completing with the bit mask of the failing ranks
+     */
+    private CompletableFuture<Long> evaluateNetwork(ParsedEmail parsed, int limit) {
+        List<CompletableFuture<Boolean>> verdicts = new ArrayList<>();
+        for (int rank = firstNetwork; rank < limit; rank++) {
+            Rule rule = rules.get(order[rank]);
+            CompletableFuture<Boolean> verdict;
+            try {
+                verdict = rule instanceof AsyncRule
+                        ? ((AsyncRule) rule).validateAsync(parsed)
+                        : CompletableFuture.supplyAsync(() -> rule.validate(parsed), networkExecutor);
+            } catch (RuntimeException e) {
+                verdict = CompletableFuture.failedFuture(e);
+            }
+            verdicts.add(verdict);
+        }
+        return CompletableFuture.allOf(verdicts.toArray(new CompletableFuture<?>[0])).handle((ignored, error) -> {
+            long failures = 0;
+            for (int n = 0; n < verdicts.size(); n++) {
+                CompletableFuture<Boolean> verdict = verdicts.get(n);
+                if (!verdict.isCompletedExceptionally() && !verdict.join()) {
+                    failures |= 1L << (firstNetwork + n);
+                }
+            }
+            if (failures == 0 && error != null) {
+                throw error instanceof CompletionException
+                        ? (CompletionException) error : new CompletionException(error);
+            }
+            return failures;
+        });
+    }
+
+    private long toPositions(long ranks) {
+        long positions = 0;
+        for (; ranks != 0; ranks &= ranks - 1) {
+            positions |= 1L << order[Long.numberOfTrailingZeros(ranks)];
+        }
+        return positions;
+    }
+
+    private static final class DomainGroup {
+        private final CharSequence representative;
+        private int needed;
+        private long failures;
+        private Throwable error;
+
+        private DomainGroup(CharSequence representative) {
+            this.representative = representative;
+        }
+
+        /**
+         * Records that a row needs the verdicts of the rules at ranks below {@code limit}.
+         */
+        private synchronized void need(int limit) {
+            needed = Math.max(needed, limit);
+        }
+    }
+}
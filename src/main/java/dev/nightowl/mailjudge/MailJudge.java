@@ -1,13 +1,34 @@
 package dev.nightowl.mailjudge;
 
+import dev.nightowl.mailjudge.rules.CompiledRuleset;
+import dev.nightowl.mailjudge.rules.CostTier;
+import dev.nightowl.mailjudge.rules.ErrorCode;
+import dev.nightowl.mailjudge.rules.ParsedEmail;
 import dev.nightowl.mailjudge.rules.Rule;
 import dev.nightowl.mailjudge.rules.Ruleset;
 import dev.nightowl.mailjudge.rules.Rulesets;
+import dev.nightowl.mailjudge.util.Utf8Bytes;
 import lombok.AccessLevel;
 import lombok.RequiredArgsConstructor;
 
-import java.util.ArrayList;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Main entry point for email validation.
@@ -25,8 +46,12 @@ import java.util.List;
  */
 @RequiredArgsConstructor(access = AccessLevel.PRIVATE)
 public class MailJudge {
+    private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
 
     private final Ruleset ruleset;
+    private final CompiledRuleset compiled;
+    private final boolean groupByDomain;
+    private final Executor networkExecutor;
 
 
     /**
@@ -36,7 +61,29 @@ public class MailJudge {
      * @return a MailJudge instance
      */
     public static MailJudge withRuleset(Ruleset ruleset) {
-        return new MailJudge(ruleset);
+        return new MailJudge(ruleset, ruleset.compile(), isGroupedByDomain(ruleset.getRules()),
+                ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Returns a MailJudge with the same ruleset that runs synchronous network rules of
+     * {@link #validateAsync(String)} on the given executor instead of the common {@link ForkJoinPool}.
+     *
+     * @param executor the executor for blocking network rules
+     * @return a MailJudge instance
+     */
+    public MailJudge withNetworkExecutor(Executor executor) {
+        return new MailJudge(ruleset, compiled, groupByDomain, executor);
+    }
+
+    /**
+     * Batches are grouped by domain when the ruleset has network rules and they only depend on the domain.
+     * Grouping costs a hash lookup per address, more than cheap domain rules save.
+     */
+    private static boolean isGroupedByDomain(List<Rule> rules) {
+        return rules.size() <= Long.SIZE
+                && rules.stream().anyMatch(rule -> rule.getCostTier() == CostTier.NETWORK)
+                && rules.stream().allMatch(rule -> rule.getCostTier() != CostTier.NETWORK || rule.isDomainScoped());
     }
 
     /**
@@ -46,25 +93,136 @@ public class MailJudge {
      * @return validation result with detailed error information
      */
     public ValidationResult validate(String email) {
-        if (email == null || email.isEmpty()) {
-            return ValidationResult.invalid(email, "Email cannot be null or empty");
-        }
+        return validate((CharSequence) email);
+    }
 
-        List<String> errors = new ArrayList<>();
-        
-        for (Rule rule : ruleset.getRules()) {
-            if (!rule.validate(email)) {
-                errors.add(rule.getErrorMessage());
-            }
-        }
+    /**
+     * Validates an email address held in any character sequence.
+     * The rules run directly on the sequence; it is only turned into a String for the result.
+     * If a network rule cannot reach a verdict, such as on a failed DNS lookup, the result is
+     * {@linkplain Verdict#INCONCLUSIVE inconclusive}.
+     *
+     * @param email the email address to validate
+     * @return validation result with detailed error information
+     */
+    public ValidationResult validate(CharSequence email) {
+        return validate(email, false, null);
+    }
 
-        if (errors.isEmpty()) {
-            return ValidationResult.valid(email);
+    /**
+     * Validates a UTF-8 encoded email address without decoding it first.
+     * ASCII input is validated in place; a String is only built for the result.
+     *
+     * @param bytes  the UTF-8 bytes
+     * @param offset index of the first byte of the address
+     * @param length number of bytes in the address
+     * @return validation result with detailed error information
+     */
+    public ValidationResult validate(byte[] bytes, int offset, int length) {
+        return validate(Utf8Bytes.view(bytes, offset, length));
+    }
+
+    /**
+     * Validates the UTF-8 encoded email address between the buffer's position and limit.
+     * The buffer's position is not changed.
+     *
+     * @param buffer the buffer holding the UTF-8 bytes
+     * @return validation result with detailed error information
+     */
+    public ValidationResult validate(ByteBuffer buffer) {
+        return validate(Utf8Bytes.view(buffer, buffer.position(), buffer.remaining()));
+    }
+
+    /**
+     * Checks whether an email address passes all rules, without building a result.
+     * An address whose network rules cannot reach a verdict is not valid.
+     *
+     * @param email the email address to validate
+     * @return true if the email passes all rules, false otherwise
+     */
+    public boolean isValid(CharSequence email) {
+        return email != null && email.length() != 0 && compiled.validate(email);
+    }
+
+    /**
+     * Checks whether a UTF-8 encoded email address passes all rules.
+     * ASCII input is validated in place without allocating a String.
+     *
+     * @param bytes  the UTF-8 bytes
+     * @param offset index of the first byte of the address
+     * @param length number of bytes in the address
+     * @return true if the email passes all rules, false otherwise
+     */
+    public boolean isValid(byte[] bytes, int offset, int length) {
+        return isValid(Utf8Bytes.view(bytes, offset, length));
+    }
+
+    /**
+     * Checks whether the UTF-8 encoded email address between the buffer's position and limit
+     * passes all rules. The buffer's position is not changed.
+     *
+     * @param buffer the buffer holding the UTF-8 bytes
+     * @return true if the email passes all rules, false otherwise
+     */
+    public boolean isValid(ByteBuffer buffer) {
+        return isValid(Utf8Bytes.view(buffer, buffer.position(), buffer.remaining()));
+    }
+
+
+    /**
+     * Validates an email address into a bit mask of the rules it fails, for high-volume filtering.
+     * Bit {@code i} is set if the rule at position {@code i} of the ruleset fails; see
+     * {@link #toResult(CharSequence, long)} and {@link #errorCodes(long)} to turn it into details on demand.
+     * Without a domain verdict cache, ASCII input is validated without allocating.
+     * A network rule that cannot reach a verdict, such as on a failed DNS lookup, counts as failing.
+     *
+     * @param email the email address to validate, null is validated as an empty address
+     * @return bit mask of the failing rule positions, 0 if the email passes all rules
+     * @throws IllegalStateException if the ruleset has more than 64 rules
+     */
+    public long failureMask(CharSequence email) {
+        CharSequence address = email == null ? "" : email;
+        Scratch scratch = SCRATCH.get();
+        if (scratch.inUse) {
+            // A rule calling back in on this thread; the outer call still needs the view
+            return compiled.failureMask(address, null);
+        }
+        scratch.inUse = true;
+        try {
+            return compiled.failureMask(address, scratch.view);
+        } finally {
+            // Drops the address, so an idle thread does not keep the caller's buffer reachable
+            scratch.view.reset("");
+            scratch.inUse = false;
         }
+    }
 
-        return ValidationResult.invalid(email, errors);
+    /**
+     * Returns the error codes of the rules in a failure mask.
+     *
+     * @param failureMask bit mask of failing rule positions, as returned by {@link #failureMask(CharSequence)}
+     * @return the distinct error codes, empty if the mask is 0
+     */
+    public Set<ErrorCode> errorCodes(long failureMask) {
+        return compiled.errorCodes(failureMask);
     }
 
+    /**
+     * Builds the detailed result for a failure mask, as {@link #validate(CharSequence)} would return it.
+     *
+     * @param email       the validated email address
+     * @param failureMask bit mask of failing rule positions, as returned by {@link #failureMask(CharSequence)}
+     * @return validation result with detailed error information
+     */
+    public ValidationResult toResult(CharSequence email, long failureMask) {
+        if (email == null || email.length() == 0) {
+            return ValidationResult.invalid(email == null ? null : email.toString(), "Email cannot be null or empty");
+        }
+        if (failureMask == 0) {
+            return ValidationResult.valid(email.toString());
+        }
+        return ValidationResult.invalid(email.toString(), compiled.errorMessages(failureMask));
+    }
 
     /**
      *
@@ -76,21 +234,369 @@ public class MailJudge {
      */
 
     public ValidationResult validateQ(String email) {
+        return validateQ((CharSequence) email);
+    }
+
+    /**
+     * Quick-fail validation of an email address held in any character sequence.
+     *
+     * @param email the email address to validate
+     * @return validation result with limited error information
+     * @see #validateQ(String)
+     */
+    public ValidationResult validateQ(CharSequence email) {
+        return validate(email, true, null);
+    }
+
+    /**
+     * Quick-fail validation of a UTF-8 encoded email address without decoding it first.
+     *
+     * @param bytes  the UTF-8 bytes
+     * @param offset index of the first byte of the address
+     * @param length number of bytes in the address
+     * @return validation result with limited error information
+     * @see #validateQ(String)
+     */
+    public ValidationResult validateQ(byte[] bytes, int offset, int length) {
+        return validateQ(Utf8Bytes.view(bytes, offset, length));
+    }
+
+    /**
+     * Quick-fail validation of the UTF-8 encoded email address between the buffer's position and limit.
+     * The buffer's position is not changed.
+     *
+     * @param buffer the buffer holding the UTF-8 bytes
+     * @return validation result with limited error information
+     * @see #validateQ(String)
+     */
+    public ValidationResult validateQ(ByteBuffer buffer) {
+        return validateQ(Utf8Bytes.view(buffer, buffer.position(), buffer.remaining()));
+    }
+
+    /**
+     * Validates an email address without blocking on network-bound rules.
+     * Cheaper rules run on the calling thread first; only if they all pass are rules such as
+     * {@link dev.nightowl.mailjudge.rules.impl.MxRecordRule} started asynchronously,
+     * so many lookups can be in flight at once without holding a thread each. If a network rule cannot
+     * reach a verdict, such as on a failed DNS lookup, the result is {@linkplain Verdict#INCONCLUSIVE inconclusive}.
+     *
+     * @param email the email address to validate
+     * @return future completing with a validation result with detailed error information
+     */
+    public CompletableFuture<ValidationResult> validateAsync(String email) {
+        if (email == null || email.isEmpty()) {
+            return CompletableFuture.completedFuture(ValidationResult.invalid(email, "Email cannot be null or empty"));
+        }
+
+        return compiled.errorsAsync(email, networkExecutor).handle((errors, error) -> {
+            if (error != null) {
+                return networkError(email, error);
+            }
+            return errors.isEmpty() ? ValidationResult.valid(email) : ValidationResult.invalid(email, errors);
+        });
+    }
+
+    /**
+     * Validates an email address without blocking, within a time budget.
+     * Network rules still pending when the budget runs out are cancelled. If no rule has failed by then,
+     * or a network rule could not reach a verdict, the result is {@linkplain Verdict#INCONCLUSIVE inconclusive}.
+     *
+     * @param email  the email address to validate
+     * @param budget the time network rules may take
+     * @return future completing with a validation result with detailed error information, by the end of the budget
+     */
+    public CompletableFuture<ValidationResult> validateAsync(String email, Duration budget) {
         if (email == null || email.isEmpty()) {
-            return ValidationResult.invalid(email, "Email cannot be null or empty");
+            return CompletableFuture.completedFuture(ValidationResult.invalid(email, "Email cannot be null or empty"));
         }
 
-        for (Rule rule : ruleset.getRules()) {
-            if (!rule.validate(email)) {
-                return ValidationResult.invalid(email, rule.getErrorMessage());
+        return compiled.errorsAsync(email, networkExecutor, budget).handle((errors, error) -> {
+            if (error == null) {
+                return errors.isEmpty() ? ValidationResult.valid(email) : ValidationResult.invalid(email, errors);
+            }
+            Throwable cause = error instanceof CompletionException && error.getCause() != null
+                    ? error.getCause() : error;
+            if (cause instanceof TimeoutException) {
+                return ValidationResult.inconclusive(email, "Validation timed out after " + budget.toMillis() + " ms");
             }
+            return networkError(email, cause);
+        });
+    }
+
+    /**
+     * Result of an address whose network rules could not reach a verdict, such as a failed DNS lookup.
+     */
+    private static ValidationResult networkError(String email, Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        return ValidationResult.inconclusive(email, "Network check failed: " + cause);
+    }
+
+    /**
+     * Validates an email address, waiting at most about the given budget for network rules.
+     * Rules other than network rules run on the calling thread first, so an address they reject
+     * never waits on the network.
+     *
+     * @param email  the email address to validate
+     * @param budget the time network rules may take
+     * @return validation result with detailed error information, {@linkplain Verdict#INCONCLUSIVE inconclusive}
+     * if the budget ran out before a verdict was known
+     */
+    public ValidationResult validate(CharSequence email, Duration budget) {
+        return validateAsync(email == null ? null : email.toString(), budget).join();
+    }
+
+    /**
+     * Validates a stream of email addresses lazily, keeping up to {@code maxInFlight} of them validating
+     * ahead of the consumer. Cheap rules run on the consuming thread; network rules of up to
+     * {@code maxInFlight} addresses are outstanding at once. Results come in input order.
+     * For reactive pipelines, see {@link ValidationProcessor}.
+     *
+     * @param emails      the email addresses
+     * @param maxInFlight maximum number of addresses validated ahead of the consumer
+     * @return sequential stream of validation results with detailed error information
+     */
+    public Stream<ValidationResult> validateStream(Stream<String> emails, int maxInFlight) {
+        if (maxInFlight <= 0) {
+            throw new IllegalArgumentException("maxInFlight must be positive");
         }
+        Iterator<String> source = emails.iterator();
+        ArrayDeque<CompletableFuture<ValidationResult>> ahead = new ArrayDeque<>(maxInFlight);
+        Spliterator<ValidationResult> results = new Spliterators.AbstractSpliterator<>(Long.MAX_VALUE,
+                Spliterator.ORDERED | Spliterator.NONNULL) {
+            @Override
+            public boolean tryAdvance(Consumer<? super ValidationResult> action) {
+                while (ahead.size() < maxInFlight && source.hasNext()) {
+                    ahead.add(validateAsync(source.next()));
+                }
+                CompletableFuture<ValidationResult> next = ahead.poll();
+                if (next == null) {
+                    return false;
+                }
+                action.accept(next.join());
+                return true;
+            }
+        };
+        return StreamSupport.stream(results, false).onClose(emails::close);
+    }
+
+    /**
+     * Validates a batch of email addresses in parallel on the common {@link ForkJoinPool}.
+     * If the ruleset has network-backed rules such as {@code MxRecordRule}, the addresses are grouped by
+     * domain and domain-scoped rules run once per distinct domain.
+     *
+     * @param emails the email addresses to validate
+     * @return validation results with detailed error information, in input order
+     */
+    public List<ValidationResult> validateAll(List<String> emails) {
+        return validateAll(emails, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Validates a batch of email addresses in parallel on the given pool.
+     *
+     * @param emails the email addresses to validate
+     * @param pool   the pool to run the validation on
+     * @return validation results with detailed error information, in input order
+     */
+    public List<ValidationResult> validateAll(List<String> emails, ForkJoinPool pool) {
+        return validateAll(emails, false, pool);
+    }
+
+    /**
+     * Validates a batch of email addresses in parallel on the common {@link ForkJoinPool}.
+     *
+     * @param emails the email addresses to validate
+     * @return validation results with detailed error information, in input order
+     */
+    public List<ValidationResult> validateAll(String[] emails) {
+        return validateAll(Arrays.asList(emails), false, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Validates a batch of email addresses in parallel on the given pool.
+     *
+     * @param emails the email addresses to validate
+     * @param pool   the pool to run the validation on
+     * @return validation results with detailed error information, in input order
+     */
+    public List<ValidationResult> validateAll(String[] emails, ForkJoinPool pool) {
+        return validateAll(Arrays.asList(emails), false, pool);
+    }
+
+    /**
+     * Quick-fail validation of a batch of email addresses in parallel on the common {@link ForkJoinPool}.
+     *
+     * @param emails the email addresses to validate
+     * @return validation results with limited error information, in input order
+     * @see #validateQ(String)
+     */
+    public List<ValidationResult> validateAllQ(List<String> emails) {
+        return validateAllQ(emails, ForkJoinPool.commonPool());
+    }
 
+    /**
+     * Quick-fail validation of a batch of email addresses in parallel on the given pool.
+     *
+     * @param emails the email addresses to validate
+     * @param pool   the pool to run the validation on
+     * @return validation results with limited error information, in input order
+     * @see #validateQ(String)
+     */
+    public List<ValidationResult> validateAllQ(List<String> emails, ForkJoinPool pool) {
+        return validateAll(emails, true, pool);
+    }
 
-        return ValidationResult.valid(email);
+    /**
+     * Quick-fail validation of a batch of email addresses in parallel on the common {@link ForkJoinPool}.
+     *
+     * @param emails the email addresses to validate
+     * @return validation results with limited error information, in input order
+     * @see #validateQ(String)
+     */
+    public List<ValidationResult> validateAllQ(String[] emails) {
+        return validateAll(Arrays.asList(emails), true, ForkJoinPool.commonPool());
+    }
 
+    /**
+     * Quick-fail validation of a batch of email addresses in parallel on the given pool.
+     *
+     * @param emails the email addresses to validate
+     * @param pool   the pool to run the validation on
+     * @return validation results with limited error information, in input order
+     * @see #validateQ(String)
+     */
+    public List<ValidationResult> validateAllQ(String[] emails, ForkJoinPool pool) {
+        return validateAll(Arrays.asList(emails), true, pool);
+    }
+
+    /**
+     * Quick-fail validation of a batch into compact results on the common {@link ForkJoinPool}.
+     * Uses a few bytes per address instead of a {@link ValidationResult} each.
+     *
+     * @param emails the email addresses to validate
+     * @return compact validation results, in input order
+     */
+    public ValidationResults validateAllCompact(List<? extends CharSequence> emails) {
+        return validateAllCompact(emails, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Quick-fail validation of a batch into compact results on the given pool.
+     * Uses a few bytes per address instead of a {@link ValidationResult} each.
+     *
+     * @param emails the email addresses to validate
+     * @param pool   the pool to run the validation on
+     * @return compact validation results, in input order
+     */
+    public ValidationResults validateAllCompact(List<? extends CharSequence> emails, ForkJoinPool pool) {
+        ValidationResults results = new ValidationResults(emails, ruleset.getRules());
+        if (groupByDomain) {
+            DomainGroupedBatch.Outcome outcome = new DomainGroupedBatch(ruleset.getRules(), true, networkExecutor)
+                    .validate(emails, pool);
+            long[] failures = outcome.failures();
+            for (int i = 0; i < failures.length; i++) {
+                CharSequence email = emails.get(i);
+                if (email == null || email.length() == 0) {
+                    results.setEmpty(i);
+                } else if (outcome.errors()[i] != null) {
+                    results.setInconclusive(i);
+                } else if (failures[i] == 0) {
+                    results.setValid(i);
+                } else {
+                    results.setFailed(i, Long.numberOfTrailingZeros(failures[i]));
+                }
+            }
+            return results;
+        }
+        BatchValidationTask.run(emails.size(), pool, (from, to) -> {
+            ParsedEmail scratch = new ParsedEmail();
+            for (int i = from; i < to; i++) {
+                CharSequence email = emails.get(i);
+                if (email == null || email.length() == 0) {
+                    results.setEmpty(i);
+                    continue;
+                }
+                int failed;
+                if (compiled.hasNetworkRules()) {
+                    try {
+                        long failures = compiled.failureMaskAsync(email, true, networkExecutor, null).join();
+                        failed = failures == 0 ? -1 : Long.numberOfTrailingZeros(failures);
+                    } catch (CompletionException e) {
+                        results.setInconclusive(i);
+                        continue;
+                    }
+                } else {
+                    failed = compiled.firstFailureIndex(email, scratch);
+                }
+                if (failed == -1) {
+                    results.setValid(i);
+                } else {
+                    results.setFailed(i, failed);
+                }
+            }
+        });
+        return results;
+    }
 
+    private List<ValidationResult> validateAll(List<? extends CharSequence> emails, boolean quick, ForkJoinPool pool) {
+        ValidationResult[] results = new ValidationResult[emails.size()];
+        if (groupByDomain) {
+            DomainGroupedBatch.Outcome outcome = new DomainGroupedBatch(ruleset.getRules(), quick, networkExecutor)
+                    .validate(emails, pool);
+            BatchValidationTask.run(results.length, pool, (from, to) -> {
+                for (int i = from; i < to; i++) {
+                    Throwable error = outcome.errors()[i];
+                    results[i] = error == null ? toResult(emails.get(i), outcome.failures()[i])
+                            : networkError(emails.get(i).toString(), error);
+                }
+            });
+            return Collections.unmodifiableList(Arrays.asList(results));
+        }
+        BatchValidationTask.run(results.length, pool, (from, to) -> {
+            ParsedEmail scratch = new ParsedEmail();
+            for (int i = from; i < to; i++) {
+                results[i] = validate(emails.get(i), quick, scratch);
+            }
+        });
+        return Collections.unmodifiableList(Arrays.asList(results));
     }
 
+    ValidationResult validate(CharSequence email, boolean quick, ParsedEmail scratch) {
+        if (email == null || email.length() == 0) {
+            return ValidationResult.invalid(email == null ? null : email.toString(), "Email cannot be null or empty");
+        }
+
+        if (compiled.hasNetworkRules()) {
+            // Network rules run through their asynchronous path, which tells a failed lookup from a failure
+            String address = email.toString();
+            return compiled.failureMaskAsync(email, quick, networkExecutor, null)
+                    .handle((failures, error) -> error == null
+                            ? toResult(address, failures) : networkError(address, error))
+                    .join();
+        }
 
+        if (quick) {
+            Rule failed = compiled.firstFailure(email, scratch);
+            if (failed != null) {
+                return ValidationResult.invalid(email.toString(), failed.getErrorMessage());
+            }
+            return ValidationResult.valid(email.toString());
+        }
+
+        List<String> errors = compiled.errors(email, scratch);
+
+        if (errors.isEmpty()) {
+            return ValidationResult.valid(email.toString());
+        }
+
+        return ValidationResult.invalid(email.toString(), errors);
+    }
+
+    /**
+     * A thread's parsed view for {@link #failureMask(CharSequence)}, marked while a call is using it.
+     */
+    private static final class Scratch {
+        private final ParsedEmail view = new ParsedEmail();
+        private boolean inUse;
+    }
 }
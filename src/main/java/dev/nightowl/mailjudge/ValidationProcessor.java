@@ -0,0 +1,221 @@
+package dev.nightowl.mailjudge;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Validates a reactive stream of email addresses, emitting results in input order.
+ * <p>
+ * Each address is validated with {@link MailJudge#validateAsync(String)}: cheap rules run inline on the
+ * thread delivering it, and network rules are started asynchronously. At most {@code maxInFlight} addresses
+ * are requested from upstream and not yet emitted downstream, so a slow or absent downstream stops the
+ * requests upstream, and no more than that many network validations are outstanding at once.
+ * <p>
+ * The processor accepts a single subscriber. Upstream errors are passed on once the results of the
+ * addresses received before them are emitted.
+ */
+public final class ValidationProcessor implements Flow.Processor<String, ValidationResult> {
+    private final MailJudge judge;
+    private final int maxInFlight;
+    private final Duration budget;
+
+    private final ConcurrentLinkedQueue<CompletableFuture<ValidationResult>> pending = new ConcurrentLinkedQueue<>();
+    // Addresses received and not yet emitted, and addresses requested and not yet received
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger awaiting = new AtomicInteger();
+    private final AtomicLong requested = new AtomicLong();
+    private final AtomicInteger wip = new AtomicInteger();
+    private final AtomicBoolean subscribed = new AtomicBoolean();
+
+    private volatile Flow.Subscription upstream;
+    private volatile Flow.Subscriber<? super ValidationResult> downstream;
+    private volatile boolean upstreamDone;
+    private volatile Throwable upstreamError;
+    private volatile boolean cancelled;
+    private volatile Throwable demandError;
+    private boolean terminated;
+
+    /**
+     * @param judge       the judge to validate with
+     * @param maxInFlight maximum number of addresses being validated or waiting to be emitted
+     */
+    public ValidationProcessor(MailJudge judge, int maxInFlight) {
+        this(judge, maxInFlight, null);
+    }
+
+    /**
+     * @param judge       the judge to validate with
+     * @param maxInFlight maximum number of addresses being validated or waiting to be emitted
+     * @param budget      time network rules may take per address, or null for no limit;
+     *                    see {@link MailJudge#validateAsync(String, Duration)}
+     */
+    public ValidationProcessor(MailJudge judge, int maxInFlight, Duration budget) {
+        if (maxInFlight <= 0) {
+            throw new IllegalArgumentException("maxInFlight must be positive");
+        }
+        this.judge = judge;
+        this.maxInFlight = maxInFlight;
+        this.budget = budget;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super ValidationResult> subscriber) {
+        if (!subscribed.compareAndSet(false, true)) {
+            subscriber.onSubscribe(new Flow.Subscription() {
+                @Override
+                public void request(long n) {
+                }
+
+                @Override
+                public void cancel() {
+                }
+            });
+            subscriber.onError(new IllegalStateException("ValidationProcessor accepts a single subscriber"));
+            return;
+        }
+        downstream = subscriber;
+        subscriber.onSubscribe(new Flow.Subscription() {
+            @Override
+            public void request(long n) {
+                if (n <= 0) {
+                    demandError = new IllegalArgumentException("Requested " + n + " results, must be positive");
+                    cancelUpstream();
+                    drain();
+                    return;
+                }
+                requested.getAndAccumulate(n, (current, add) -> current + add < 0 ? Long.MAX_VALUE : current + add);
+                drain();
+            }
+
+            @Override
+            public void cancel() {
+                cancelled = true;
+                cancelUpstream();
+            }
+        });
+        drain();
+    }
+
+    private void cancelUpstream() {
+        Flow.Subscription subscription = upstream;
+        if (subscription != null) {
+            subscription.cancel();
+        }
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        if (upstream != null) {
+            subscription.cancel();
+            return;
+        }
+        upstream = subscription;
+        if (cancelled || demandError != null) {
+            subscription.cancel();
+            return;
+        }
+        drain();
+    }
+
+    @Override
+    public void onNext(String email) {
+        awaiting.decrementAndGet();
+        inFlight.incrementAndGet();
+        CompletableFuture<ValidationResult> result = budget == null
+                ? judge.validateAsync(email)
+                : judge.validateAsync(email, budget);
+        pending.add(result);
+        result.whenComplete((ignored, error) -> drain());
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        upstreamError = throwable;
+        upstreamDone = true;
+        drain();
+    }
+
+    @Override
+    public void onComplete() {
+        upstreamDone = true;
+        drain();
+    }
+
+    /**
+     * Emits completed results in order as far as downstream demand allows, then tops up the upstream demand.
+     * Runs on one thread at a time; calls arriving meanwhile make the running thread loop again.
+     */
+    private void drain() {
+        if (wip.getAndIncrement() != 0) {
+            return;
+        }
+        int missed = 1;
+        do {
+            Flow.Subscriber<? super ValidationResult> subscriber = downstream;
+            if (subscriber != null && !terminated) {
+                if (cancelled) {
+                    pending.clear();
+                } else if (demandError != null) {
+                    terminated = true;
+                    pending.clear();
+                    subscriber.onError(demandError);
+                } else {
+                    emit(subscriber);
+                }
+            }
+            missed = wip.addAndGet(-missed);
+        } while (missed != 0);
+    }
+
+    private void emit(Flow.Subscriber<? super ValidationResult> subscriber) {
+        long demand = requested.get();
+        long emitted = 0;
+        while (emitted != demand) {
+            CompletableFuture<ValidationResult> head = pending.peek();
+            if (head == null || !head.isDone()) {
+                break;
+            }
+            pending.poll();
+            inFlight.decrementAndGet();
+            ValidationResult result;
+            try {
+                result = head.join();
+            } catch (CompletionException e) {
+                terminated = true;
+                pending.clear();
+                cancelUpstream();
+                subscriber.onError(e.getCause() != null ? e.getCause() : e);
+                return;
+            }
+            subscriber.onNext(result);
+            emitted++;
+        }
+        if (emitted != 0 && demand != Long.MAX_VALUE) {
+            requested.addAndGet(-emitted);
+        }
+
+        if (upstreamDone && pending.isEmpty()) {
+            terminated = true;
+            Throwable error = upstreamError;
+            if (error != null) {
+                subscriber.onError(error);
+            } else {
+                subscriber.onComplete();
+            }
+            return;
+        }
+
+        Flow.Subscription subscription = upstream;
+        int free = maxInFlight - inFlight.get() - awaiting.get();
+        if (subscription != null && !upstreamDone && free > 0) {
+            awaiting.addAndGet(free);
+            subscription.request(free);
+        }
+    }
+}
@@ -7,8 +7,20 @@ import java.util.List;
 
 /**
  * Immutable result of an email validation operation.
+ * {@link #valid()} is only true for {@link Verdict#VALID}; an {@link Verdict#INCONCLUSIVE} result is not valid.
  */
-public record ValidationResult(boolean valid, String email, List<String> errors) {
+public record ValidationResult(boolean valid, String email, List<String> errors, Verdict verdict) {
+    /**
+     * Creates a valid or invalid result.
+     *
+     * @param valid  whether the email passes all rules
+     * @param email  the email address
+     * @param errors the error messages, empty if valid
+     */
+    public ValidationResult(boolean valid, String email, List<String> errors) {
+        this(valid, email, errors, valid ? Verdict.VALID : Verdict.INVALID);
+    }
+
     /**
      * Creates a valid validation result.
      * 
@@ -40,4 +52,23 @@ public record ValidationResult(boolean valid, String email, List<String> errors)
     public static ValidationResult invalid(String email, List<String> errors) {
         return new ValidationResult(false, email, Collections.unmodifiableList(errors));
     }
+
+    /**
+     * Creates a result for an email whose network rules could not reach a verdict, because they ran out
+     * of time or their lookups failed.
+     *
+     * @param email  the email address
+     * @param reason why the validation is inconclusive
+     * @return inconclusive result
+     */
+    public static ValidationResult inconclusive(String email, String reason) {
+        return new ValidationResult(false, email, Collections.singletonList(reason), Verdict.INCONCLUSIVE);
+    }
+
+    /**
+     * @return true if the network rules ran out of time or failed before a verdict was known
+     */
+    public boolean isInconclusive() {
+        return verdict == Verdict.INCONCLUSIVE;
+    }
 }
@@ -0,0 +1,210 @@
+package dev.nightowl.mailjudge;
+
+import dev.nightowl.mailjudge.rules.ErrorCode;
+import dev.nightowl.mailjudge.rules.Rule;
+
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Compact results of a quick-fail batch validation.
+ * <p>
+ * Each address costs one bit of validity and one byte naming the first rule it failed,
+ * instead of a {@link ValidationResult} with its own error list. Error messages and full
+ * results are only built when asked for. The addresses themselves are not copied; the results
+ * keep a reference to the input list.
+ */
+public final class ValidationResults {
+    /**
+     * Code of an address that passed all rules.
+     */
+    public static final int VALID = 0;
+
+    /**
+     * Code of an address that was null or empty.
+     */
+    public static final int EMPTY = 255;
+
+    /**
+     * Code of an address that passed every other rule, but whose network rules could not reach a verdict.
+     */
+    public static final int INCONCLUSIVE = 254;
+
+    /**
+     * Largest number of rules whose failures can be told apart.
+     */
+    public static final int MAX_RULES = 253;
+
+    private static final String EMPTY_MESSAGE = "Email cannot be null or empty";
+    private static final String INCONCLUSIVE_MESSAGE = "Network check failed";
+
+    private final List<? extends CharSequence> emails;
+    private final List<Rule> rules;
+    private final long[] validBits;
+    private final byte[] codes;
+
+    ValidationResults(List<? extends CharSequence> emails, List<Rule> rules) {
+        if (rules.size() > MAX_RULES) {
+            throw new IllegalArgumentException("Compact results support at most " + MAX_RULES + " rules");
+        }
+        this.emails = emails;
+        this.rules = rules;
+        this.validBits = new long[(emails.size() + 63) >>> 6];
+        this.codes = new byte[emails.size()];
+    }
+
+    void setValid(int index) {
+        validBits[index >>> 6] |= 1L << index;
+    }
+
+    void setFailed(int index, int ruleIndex) {
+        codes[index] = (byte) (ruleIndex + 1);
+    }
+
+    void setEmpty(int index) {
+        codes[index] = (byte) EMPTY;
+    }
+
+    void setInconclusive(int index) {
+        codes[index] = (byte) INCONCLUSIVE;
+    }
+
+    /**
+     * @return number of validated addresses
+     */
+    public int size() {
+        return codes.length;
+    }
+
+    /**
+     * @param index position in the input
+     * @return true if the address passed all rules
+     */
+    public boolean isValid(int index) {
+        return (validBits[index >>> 6] & (1L << index)) != 0;
+    }
+
+    /**
+     * @return number of addresses that passed all rules
+     */
+    public int validCount() {
+        int count = 0;
+        for (long word : validBits) {
+            count += Long.bitCount(word);
+        }
+        return count;
+    }
+
+    /**
+     * @param index position in the input
+     * @return true if the network rules of the address could not reach a verdict
+     */
+    public boolean isInconclusive(int index) {
+        return getCode(index) == INCONCLUSIVE;
+    }
+
+    /**
+     * @return number of addresses whose network rules could not reach a verdict
+     */
+    public int inconclusiveCount() {
+        int count = 0;
+        for (byte code : codes) {
+            count += (code & 0xFF) == INCONCLUSIVE ? 1 : 0;
+        }
+        return count;
+    }
+
+    /**
+     * @return number of addresses that failed
+     */
+    public int invalidCount() {
+        return size() - validCount() - inconclusiveCount();
+    }
+
+    /**
+     * @return a copy of the validity bits, bit {@code i} set if address {@code i} is valid
+     */
+    public BitSet toBitSet() {
+        return BitSet.valueOf(validBits);
+    }
+
+    /**
+     * Returns the failure code of an address: {@link #VALID}, {@link #EMPTY}, {@link #INCONCLUSIVE},
+     * or the position of the first failing rule in the ruleset plus one.
+     *
+     * @param index position in the input
+     * @return the failure code
+     */
+    public int getCode(int index) {
+        return codes[index] & 0xFF;
+    }
+
+    /**
+     * @param index position in the input
+     * @return the first rule the address failed, or null if it is valid, inconclusive or was empty
+     */
+    public Rule getFailedRule(int index) {
+        int code = getCode(index);
+        return code == VALID || code == EMPTY || code == INCONCLUSIVE ? null : rules.get(code - 1);
+    }
+
+    /**
+     * @param index position in the input
+     * @return the error message of the first failure, why the address is inconclusive, or null if it is valid
+     */
+    public String getError(int index) {
+        int code = getCode(index);
+        if (code == VALID) {
+            return null;
+        }
+        if (code == INCONCLUSIVE) {
+            return INCONCLUSIVE_MESSAGE;
+        }
+        return code == EMPTY ? EMPTY_MESSAGE : rules.get(code - 1).getErrorMessage();
+    }
+
+    /**
+     * @param index position in the input
+     * @return the error code of the first failure, {@link ErrorCode#SYNTAX} for an empty address,
+     * or null if the address is valid or inconclusive
+     */
+    public ErrorCode getErrorCode(int index) {
+        int code = getCode(index);
+        if (code == VALID || code == INCONCLUSIVE) {
+            return null;
+        }
+        return code == EMPTY ? ErrorCode.SYNTAX : rules.get(code - 1).getErrorCode();
+    }
+
+    /**
+     * @param index position in the input
+     * @return the address as it was passed in
+     */
+    public CharSequence getEmail(int index) {
+        return emails.get(index);
+    }
+
+    /**
+     * Builds the full result of one address, as {@link MailJudge#validateQ(String)} would return it.
+     *
+     * @param index position in the input
+     * @return the validation result
+     */
+    public ValidationResult get(int index) {
+        CharSequence email = emails.get(index);
+        String value = email == null ? null : email.toString();
+        String error = getError(index);
+        if (error == null) {
+            return ValidationResult.valid(value);
+        }
+        return isInconclusive(index) ? ValidationResult.inconclusive(value, error) : ValidationResult.invalid(value, error);
+    }
+
+    /**
+     * @return the rules the failure codes refer to
+     */
+    public List<Rule> getRules() {
+        return Collections.unmodifiableList(rules);
+    }
+}
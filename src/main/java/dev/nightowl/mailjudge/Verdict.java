@@ -0,0 +1,21 @@
+package dev.nightowl.mailjudge;
+
+/**
+ * Outcome of validating an email address.
+ */
+public enum Verdict {
+    /**
+     * The address passes all rules.
+     */
+    VALID,
+    /**
+     * The address fails at least one rule.
+     */
+    INVALID,
+    /**
+     * The address passes every rule that completed, but a network rule did not reach a verdict:
+     * it ran out of the time budget, or its lookup failed, such as on a DNS timeout or a rejected query.
+     * Validating again later may give a verdict.
+     */
+    INCONCLUSIVE
+}
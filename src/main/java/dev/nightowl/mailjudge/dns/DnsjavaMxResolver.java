@@ -0,0 +1,89 @@
+package dev.nightowl.mailjudge.dns;
+
+import org.xbill.DNS.MXRecord;
+import org.xbill.DNS.Name;
+import org.xbill.DNS.Record;
+import org.xbill.DNS.Resolver;
+import org.xbill.DNS.SimpleResolver;
+import org.xbill.DNS.TextParseException;
+import org.xbill.DNS.Type;
+import org.xbill.DNS.lookup.LookupSession;
+import org.xbill.DNS.lookup.NoSuchDomainException;
+import org.xbill.DNS.lookup.NoSuchRRSetException;
+
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * {@link MxResolver} on dnsjava's asynchronous lookup, so no thread is held while a query is in flight.
+ */
+public class DnsjavaMxResolver implements MxResolver {
+    private final LookupSession session;
+
+    /**
+     * Creates a resolver querying the system's DNS servers.
+     */
+    public DnsjavaMxResolver() {
+        this(LookupSession.defaultBuilder().build());
+    }
+
+    /**
+     * Creates a resolver sending its queries to the given dnsjava resolver.
+     *
+     * @param resolver the resolver to query
+     */
+    public DnsjavaMxResolver(Resolver resolver) {
+        this(LookupSession.builder().resolver(resolver).build());
+    }
+
+    private DnsjavaMxResolver(LookupSession session) {
+        this.session = session;
+    }
+
+    /**
+     * Creates a resolver querying a single DNS server.
+     *
+     * @param server host name or address of the server, on port 53
+     * @return the resolver
+     * @throws UnknownHostException if the server name cannot be resolved
+     */
+    public static DnsjavaMxResolver forServer(String server) throws UnknownHostException {
+        return new DnsjavaMxResolver(new SimpleResolver(server));
+    }
+
+    @Override
+    public CompletableFuture<MxRecords> lookupMx(String domain) {
+        Name name;
+        try {
+            name = Name.fromString(domain, Name.root);
+        } catch (TextParseException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+
+        return session.lookupAsync(name, Type.MX).toCompletableFuture().handle((result, error) -> {
+            if (error != null) {
+                Throwable cause = error instanceof CompletionException && error.getCause() != null
+                        ? error.getCause() : error;
+                if (cause instanceof NoSuchDomainException || cause instanceof NoSuchRRSetException) {
+                    return MxRecords.none();
+                }
+                throw new CompletionException(cause);
+            }
+            if (result.getRecords().isEmpty()) {
+                return MxRecords.none();
+            }
+
+            long ttl = Long.MAX_VALUE;
+            List<String> hosts = new ArrayList<>(result.getRecords().size());
+            for (Record record : result.getRecords()) {
+                ttl = Math.min(ttl, record.getTTL());
+                hosts.add(record instanceof MXRecord ? ((MXRecord) record).getTarget().toString(true)
+                        : record.rdataToString());
+            }
+            return new MxRecords(hosts, ttl);
+        });
+    }
+}
@@ -0,0 +1,213 @@
+package dev.nightowl.mailjudge.dns;
+
+import java.net.UnknownHostException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * {@link MxResolver} that spreads queries over several resolvers and hedges slow ones.
+ * <p>
+ * Each query goes to the resolver with the lowest median latency first. If it has not answered
+ * within that resolver's latency percentile (95th by default, clamped between a minimum and a maximum
+ * delay), or fails, the same query goes to the next fastest resolver, and the first answer wins.
+ * The other query is then cancelled. Latencies are tracked per resolver over its recent queries.
+ * A failed query counts as taking at least the maximum hedge delay, and a query abandoned for a faster
+ * answer as taking its time so far plus its resolver's hedge delay, so a resolver that fails fast or
+ * turns slow soon stops being asked first. Resolvers without samples yet are asked first, so they get measured.
+ */
+public class HedgedMxResolver implements MxResolver {
+    private final List<MxResolver> resolvers;
+    private final LatencyTracker[] latencies;
+    private final double percentile;
+    private final long minDelayNanos;
+    private final long maxDelayNanos;
+    private final LongAdder hedges = new LongAdder();
+
+    /**
+     * Creates a resolver hedging at the 95th latency percentile, after between 5 and 500 ms.
+     *
+     * @param resolvers the resolvers to query, at least one
+     */
+    public HedgedMxResolver(List<? extends MxResolver> resolvers) {
+        this(resolvers, 0.95, Duration.ofMillis(5), Duration.ofMillis(500));
+    }
+
+    /**
+     * Creates a resolver with a custom hedge delay.
+     *
+     * @param resolvers  the resolvers to query, at least one
+     * @param percentile latency percentile of the first resolver after which the query is hedged, between 0 and 1
+     * @param minDelay   shortest delay before hedging
+     * @param maxDelay   longest delay before hedging, also used until the first resolver has latency samples
+     */
+    public HedgedMxResolver(List<? extends MxResolver> resolvers, double percentile, Duration minDelay,
+                            Duration maxDelay) {
+        if (resolvers.isEmpty()) {
+            throw new IllegalArgumentException("At least one resolver is required");
+        }
+        if (percentile <= 0 || percentile > 1) {
+            throw new IllegalArgumentException("percentile must be in (0, 1]");
+        }
+        this.resolvers = List.copyOf(resolvers);
+        this.latencies = new LatencyTracker[resolvers.size()];
+        for (int i = 0; i < latencies.length; i++) {
+            latencies[i] = new LatencyTracker();
+        }
+        this.percentile = percentile;
+        this.minDelayNanos = minDelay.toNanos();
+        this.maxDelayNanos = Math.max(minDelay.toNanos(), maxDelay.toNanos());
+    }
+
+    /**
+     * Creates a resolver querying the given DNS servers.
+     *
+     * @param servers host names or addresses of the servers, on port 53
+     * @return the resolver
+     * @throws UnknownHostException if a server name cannot be resolved
+     */
+    public static HedgedMxResolver forServers(String... servers) throws UnknownHostException {
+        List<MxResolver> resolvers = new ArrayList<>(servers.length);
+        for (String server : servers) {
+            resolvers.add(DnsjavaMxResolver.forServer(server));
+        }
+        return new HedgedMxResolver(resolvers);
+    }
+
+    @Override
+    public CompletableFuture<MxRecords> lookupMx(String domain) {
+        int primary = fastest(-1);
+        Lookup lookup = new Lookup(domain, resolvers.size() > 1 ? fastest(primary) : -1);
+        lookup.send(primary);
+        if (lookup.secondary != -1) {
+            CompletableFuture.delayedExecutor(getHedgeDelay(primary).toNanos(), TimeUnit.NANOSECONDS)
+                    .execute(lookup::hedge);
+        }
+        return lookup.result;
+    }
+
+    /**
+     * @param resolver position of the resolver
+     * @return how long a query to the resolver may take before it is hedged
+     */
+    public Duration getHedgeDelay(int resolver) {
+        long latency = latencies[resolver].percentile(percentile);
+        long delay = latency < 0 ? maxDelayNanos : Math.max(minDelayNanos, Math.min(maxDelayNanos, latency));
+        return Duration.ofNanos(delay);
+    }
+
+    /**
+     * @return number of queries that were sent to a second resolver
+     */
+    public long getHedgeCount() {
+        return hedges.sum();
+    }
+
+    /**
+     * @return position of the resolver with the lowest median latency, other than {@code exclude}
+     */
+    private int fastest(int exclude) {
+        int best = -1;
+        long bestLatency = Long.MAX_VALUE;
+        for (int i = 0; i < latencies.length; i++) {
+            long median = latencies[i].percentile(0.5);
+            if (i != exclude && median < bestLatency) {
+                best = i;
+                bestLatency = median;
+            }
+        }
+        return best;
+    }
+
+    private static boolean isCancellation(Throwable error) {
+        return error instanceof CancellationException
+                || error instanceof CompletionException && error.getCause() instanceof CancellationException;
+    }
+
+    /**
+     * One query, sent to up to two resolvers.
+     */
+    private final class Lookup {
+        private final String domain;
+        private final int secondary;
+        private final CompletableFuture<MxRecords> result = new CompletableFuture<>();
+        private final List<CompletableFuture<MxRecords>> queries = new ArrayList<>(2);
+        private int sent = 1;
+        private int failures;
+        private boolean hedged;
+
+        private Lookup(String domain, int secondary) {
+            this.domain = domain;
+            this.secondary = secondary;
+            result.whenComplete((records, error) -> cancelQueries());
+        }
+
+        private void send(int resolver) {
+            long start = System.nanoTime();
+            CompletableFuture<MxRecords> query = resolvers.get(resolver).lookupMx(domain);
+            synchronized (this) {
+                queries.add(query);
+            }
+            query.whenComplete((records, error) -> {
+                long elapsed = System.nanoTime() - start;
+                if (error == null) {
+                    latencies[resolver].record(elapsed);
+                } else if (isCancellation(error)) {
+                    // Lost the race: it would have taken longer than the winner, by an unknown margin
+                    latencies[resolver].record(elapsed + getHedgeDelay(resolver).toNanos());
+                } else {
+                    latencies[resolver].record(Math.max(elapsed, maxDelayNanos));
+                }
+                if (error == null) {
+                    result.complete(records);
+                } else {
+                    failed(error);
+                }
+            });
+            if (result.isDone()) {
+                query.cancel(false);
+            }
+        }
+
+        private void hedge() {
+            synchronized (this) {
+                if (hedged || secondary == -1 || result.isDone()) {
+                    return;
+                }
+                hedged = true;
+                sent++;
+            }
+            hedges.increment();
+            send(secondary);
+        }
+
+        private void failed(Throwable error) {
+            boolean last;
+            synchronized (this) {
+                failures++;
+                last = failures == sent && (hedged || secondary == -1);
+            }
+            if (last) {
+                result.completeExceptionally(error instanceof CompletionException && error.getCause() != null
+                        ? error.getCause() : error);
+            } else {
+                hedge();
+            }
+        }
+
+        private void cancelQueries() {
+            List<CompletableFuture<MxRecords>> started;
+            synchronized (this) {
+                started = new ArrayList<>(queries);
+            }
+            for (CompletableFuture<MxRecords> query : started) {
+                query.cancel(false);
+            }
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package dev.nightowl.mailjudge.dns;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Latency percentiles over a sliding window of the most recent samples.
+ * Percentiles are read from a sorted copy of the window that is refreshed every few samples,
+ * so reading them costs no sorting.
+ */
+final class LatencyTracker {
+    private static final int WINDOW = 256;
+    private static final int REFRESH_INTERVAL = 16;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final long[] samples = new long[WINDOW];
+    private int count;
+    private int next;
+    private int sinceRefresh;
+    private volatile long[] sorted = new long[0];
+
+    /**
+     * @param nanos latency of one query
+     */
+    void record(long nanos) {
+        lock.lock();
+        try {
+            samples[next] = nanos;
+            next = (next + 1) % WINDOW;
+            count = Math.min(count + 1, WINDOW);
+            // Refresh on every sample until the window has a few, so early percentiles are not stale
+            if (++sinceRefresh >= REFRESH_INTERVAL || count < REFRESH_INTERVAL) {
+                long[] copy = Arrays.copyOf(samples, count);
+                Arrays.sort(copy);
+                sorted = copy;
+                sinceRefresh = 0;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @param percentile the percentile, between 0 and 1
+     * @return the latency in nanoseconds at the percentile, or -1 if there are no samples
+     */
+    long percentile(double percentile) {
+        long[] snapshot = sorted;
+        if (snapshot.length == 0) {
+            return -1;
+        }
+        int index = (int) Math.ceil(percentile * snapshot.length) - 1;
+        return snapshot[Math.max(0, Math.min(index, snapshot.length - 1))];
+    }
+}
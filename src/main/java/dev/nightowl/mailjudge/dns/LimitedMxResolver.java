@@ -0,0 +1,243 @@
+package dev.nightowl.mailjudge.dns;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * {@link MxResolver} that adapts the number of concurrent queries to what the underlying resolver can handle.
+ * <p>
+ * The limit follows additive increase, multiplicative decrease: while queries answer close to the
+ * resolver's unloaded latency and the limit is in use, every answer raises it by {@code 1 / limit},
+ * about one more query per round trip. A failed query, or an answer much slower than the unloaded latency,
+ * cuts it by 10%, at most once per unloaded round trip, so a burst of timeouts counts as one signal.
+ * The unloaded latency is the fastest answer seen, drifting up by a fraction with every answer so it
+ * follows a resolver that becomes slower for good. Queries over the limit wait in
+ * arrival order; a query that waits longer than the maximum wait completes with a
+ * {@link RejectedExecutionException}, without reaching the resolver.
+ */
+public class LimitedMxResolver implements MxResolver {
+    private static final double BACKOFF = 0.9;
+    private static final double LATENCY_TOLERANCE = 2.0;
+    private static final long LATENCY_SLACK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private final MxResolver resolver;
+    private final int maxLimit;
+    private final long maxWaitNanos;
+    private final LongAdder rejected = new LongAdder();
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final ArrayDeque<Waiter> waiting = new ArrayDeque<>();
+    private double limit;
+    private int inFlight;
+    private long lastDecrease;
+    private long unloadedNanos = -1;
+
+    /**
+     * Creates a limiter starting at 20 concurrent queries, growing to at most 500, where queries wait
+     * up to one second for their turn.
+     *
+     * @param resolver the resolver to limit
+     */
+    public LimitedMxResolver(MxResolver resolver) {
+        this(resolver, 20, 500, Duration.ofSeconds(1));
+    }
+
+    /**
+     * Creates a limiter with custom bounds.
+     *
+     * @param resolver     the resolver to limit
+     * @param initialLimit concurrent queries allowed before any answer is measured
+     * @param maxLimit     most concurrent queries ever allowed
+     * @param maxWait      how long a query may wait for its turn, or zero to reject it at once
+     */
+    public LimitedMxResolver(MxResolver resolver, int initialLimit, int maxLimit, Duration maxWait) {
+        if (initialLimit <= 0 || maxLimit < initialLimit) {
+            throw new IllegalArgumentException("Limits must satisfy 0 < initialLimit <= maxLimit");
+        }
+        if (maxWait.isNegative()) {
+            throw new IllegalArgumentException("maxWait must not be negative");
+        }
+        this.resolver = resolver;
+        this.maxLimit = maxLimit;
+        this.maxWaitNanos = maxWait.toNanos();
+        this.limit = initialLimit;
+        this.lastDecrease = System.nanoTime();
+    }
+
+    @Override
+    public CompletableFuture<MxRecords> lookupMx(String domain) {
+        Waiter waiter = new Waiter(domain);
+        lock.lock();
+        try {
+            if (waiting.isEmpty() && inFlight < (int) limit) {
+                inFlight++;
+            } else if (maxWaitNanos == 0) {
+                rejected.increment();
+                return CompletableFuture.failedFuture(
+                        new RejectedExecutionException("Too many concurrent MX lookups: " + inFlight));
+            } else {
+                waiting.add(waiter);
+                CompletableFuture.delayedExecutor(maxWaitNanos, TimeUnit.NANOSECONDS).execute(() -> expire(waiter));
+                return waiter.result;
+            }
+        } finally {
+            lock.unlock();
+        }
+        send(waiter);
+        return waiter.result;
+    }
+
+    /**
+     * Returns the limiter shared by MX rules that use the system's DNS resolver, so they stay within one
+     * limit together. It uses the default bounds of {@link #LimitedMxResolver(MxResolver)}.
+     *
+     * @return the shared limiter over the system's DNS resolver
+     */
+    public static LimitedMxResolver getDefault() {
+        return DefaultHolder.DEFAULT;
+    }
+
+    /**
+     * @return the current number of concurrent queries allowed
+     */
+    public int getLimit() {
+        lock.lock();
+        try {
+            return (int) limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return number of queries sent to the resolver and not answered yet
+     */
+    public int getInFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return number of queries rejected after waiting too long, or at once with no wait allowed
+     */
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    private void send(Waiter waiter) {
+        long start = System.nanoTime();
+        CompletableFuture<MxRecords> query;
+        try {
+            query = resolver.lookupMx(waiter.domain);
+        } catch (RuntimeException e) {
+            query = CompletableFuture.failedFuture(e);
+        }
+        CompletableFuture<MxRecords> sent = query;
+        // A caller losing interest, such as the slower half of a hedged query, cancels the query too
+        waiter.result.whenComplete((records, error) -> {
+            if (waiter.result.isCancelled()) {
+                sent.cancel(false);
+            }
+        });
+        sent.whenComplete((records, error) -> {
+            complete(start, error);
+            if (error == null) {
+                waiter.result.complete(records);
+            } else {
+                waiter.result.completeExceptionally(error instanceof CompletionException && error.getCause() != null
+                        ? error.getCause() : error);
+            }
+        });
+    }
+
+    /**
+     * Releases the slot of an answered query, adjusts the limit and hands freed slots to waiting queries.
+     */
+    private void complete(long start, Throwable error) {
+        long now = System.nanoTime();
+        long latency = now - start;
+        boolean cancelled = error instanceof CancellationException
+                || error instanceof CompletionException && error.getCause() instanceof CancellationException;
+
+        List<Waiter> next = new ArrayList<>();
+        lock.lock();
+        try {
+            inFlight--;
+            if (!cancelled) {
+                if (error == null) {
+                    // Doubles in about 2800 answers, so it outlasts a stretch of load
+                    unloadedNanos = unloadedNanos < 0 || latency < unloadedNanos
+                            ? latency : unloadedNanos + (unloadedNanos >> 12) + 1;
+                }
+                if (error != null || isSlow(latency)) {
+                    if (now - lastDecrease > Math.max(unloadedNanos, 0)) {
+                        limit = Math.max(1, limit * BACKOFF);
+                        lastDecrease = now;
+                    }
+                } else if (inFlight + 1 >= limit / 2) {
+                    limit = Math.min(maxLimit, limit + 1 / limit);
+                }
+            }
+            while (inFlight < (int) limit && !waiting.isEmpty()) {
+                Waiter waiter = waiting.poll();
+                if (!waiter.result.isDone()) {
+                    inFlight++;
+                    next.add(waiter);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        for (Waiter waiter : next) {
+            send(waiter);
+        }
+    }
+
+    private boolean isSlow(long latency) {
+        return latency > Math.max(unloadedNanos * LATENCY_TOLERANCE, unloadedNanos + LATENCY_SLACK_NANOS);
+    }
+
+    private void expire(Waiter waiter) {
+        boolean removed;
+        lock.lock();
+        try {
+            removed = waiting.remove(waiter);
+        } finally {
+            lock.unlock();
+        }
+        if (removed) {
+            rejected.increment();
+            waiter.result.completeExceptionally(new RejectedExecutionException(
+                    "MX lookup of " + waiter.domain + " waited longer than " + Duration.ofNanos(maxWaitNanos)));
+        }
+    }
+
+    /**
+     * Creates the shared limiter on first use, so limiters over other resolvers never set up the system's.
+     */
+    private static final class DefaultHolder {
+        private static final LimitedMxResolver DEFAULT = new LimitedMxResolver(new DnsjavaMxResolver());
+    }
+
+    private static final class Waiter {
+        private final String domain;
+        private final CompletableFuture<MxRecords> result = new CompletableFuture<>();
+
+        private Waiter(String domain) {
+            this.domain = domain;
+        }
+    }
+}
@@ -0,0 +1,367 @@
+package dev.nightowl.mailjudge.dns;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounded, concurrent cache of MX verdicts per domain.
+ * <p>
+ * Domains with MX records are kept for the TTL of their records, capped at a maximum.
+ * NXDOMAIN and no-MX answers are kept for a shorter negative TTL. The cache is split into
+ * segments, each a small LRU map with its own lock, so lookups for different domains rarely
+ * contend. The segment capacities add up to the maximum size, but eviction is only LRU within
+ * a segment: a full segment drops its least recently used domain even if other segments hold
+ * older ones, so the cache as a whole is approximately LRU. Hit and miss counts are tracked for monitoring.
+ * <p>
+ * The live verdicts can be written to a snapshot file and read back in another process, keeping
+ * their expiry times, so a restarted application starts warm; see {@link MxCacheStore}.
+ */
+public class MxCache {
+    private static final int SEGMENTS = 16;
+    private static final int SNAPSHOT_MAGIC = 0x4D4A4D58; // "MJMX"
+    private static final int SNAPSHOT_VERSION = 1;
+    private static final MxCache DEFAULT = new MxCache();
+
+    private final Segment[] segments;
+    private final int maximumSize;
+    private final long negativeTtlMillis;
+    private final long maxTtlMillis;
+    private final Clock clock;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Creates a cache of 10,000 domains, caching negative answers for 5 minutes
+     * and positive answers for at most 1 day.
+     */
+    public MxCache() {
+        this(10_000, Duration.ofMinutes(5), Duration.ofDays(1));
+    }
+
+    /**
+     * Creates a cache with custom limits.
+     *
+     * @param maximumSize maximum number of domains to keep
+     * @param negativeTtl how long NXDOMAIN and no-MX answers are kept
+     * @param maxTtl      upper bound on how long positive answers are kept, whatever their record TTL
+     */
+    public MxCache(int maximumSize, Duration negativeTtl, Duration maxTtl) {
+        this(maximumSize, negativeTtl, maxTtl, Clock.systemUTC());
+    }
+
+    MxCache(int maximumSize, Duration negativeTtl, Duration maxTtl, Clock clock) {
+        if (maximumSize <= 0) {
+            throw new IllegalArgumentException("maximumSize must be positive");
+        }
+        this.maximumSize = maximumSize;
+        this.negativeTtlMillis = negativeTtl.toMillis();
+        this.maxTtlMillis = maxTtl.toMillis();
+        this.clock = clock;
+
+        // A power of two, and no more segments than entries, so every segment holds at least one
+        int count = Integer.highestOneBit(Math.min(SEGMENTS, maximumSize));
+        this.segments = new Segment[count];
+        for (int i = 0; i < count; i++) {
+            segments[i] = new Segment(maximumSize / count + (i < maximumSize % count ? 1 : 0));
+        }
+    }
+
+    /**
+     * Returns the cache shared by MX rules that use the system's DNS resolver.
+     *
+     * @return the shared cache
+     */
+    public static MxCache getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Returns the cached verdict for a domain.
+     *
+     * @param domain the lowercased domain
+     * @return true or false if a live verdict is cached, null otherwise
+     */
+    public Boolean get(String domain) {
+        Boolean hasMx = peek(domain);
+        if (hasMx != null) {
+            hits.increment();
+        } else {
+            misses.increment();
+        }
+        return hasMx;
+    }
+
+    /**
+     * Returns the cached verdict for a domain without counting a hit or miss,
+     * for callers checking again after a miss.
+     *
+     * @param domain the lowercased domain
+     * @return true or false if a live verdict is cached, null otherwise
+     */
+    public Boolean peek(String domain) {
+        Segment segment = segmentFor(domain);
+        long now = clock.millis();
+
+        segment.lock.lock();
+        try {
+            Entry entry = segment.entries.get(domain);
+            if (entry != null) {
+                if (entry.expiresAt > now) {
+                    return entry.hasMx;
+                }
+                segment.entries.remove(domain);
+            }
+        } finally {
+            segment.lock.unlock();
+        }
+        return null;
+    }
+
+    /**
+     * Caches a positive answer for the TTL of the MX records, capped at the maximum TTL.
+     *
+     * @param domain     the lowercased domain
+     * @param ttlSeconds the smallest TTL of the MX records
+     */
+    public void putPositive(String domain, long ttlSeconds) {
+        long ttlMillis = Math.min(ttlSeconds * 1000, maxTtlMillis);
+        if (ttlMillis > 0) {
+            put(domain, true, clock.millis() + ttlMillis);
+        }
+    }
+
+    /**
+     * Caches a NXDOMAIN or no-MX answer for the negative TTL.
+     *
+     * @param domain the lowercased domain
+     */
+    public void putNegative(String domain) {
+        if (negativeTtlMillis > 0) {
+            put(domain, false, clock.millis() + negativeTtlMillis);
+        }
+    }
+
+    void put(String domain, boolean hasMx, long expiresAt) {
+        Segment segment = segmentFor(domain);
+        segment.lock.lock();
+        try {
+            segment.entries.put(domain, new Entry(hasMx, expiresAt));
+        } finally {
+            segment.lock.unlock();
+        }
+    }
+
+    /**
+     * Writes the live verdicts to a snapshot file, replacing it atomically.
+     * Each verdict is stored with its domain and absolute expiry time.
+     *
+     * @param path the file to write
+     * @return number of verdicts written
+     * @throws IOException if the file cannot be written
+     */
+    public int writeTo(Path path) throws IOException {
+        long now = clock.millis();
+        List<String> domains = new ArrayList<>();
+        List<Entry> entries = new ArrayList<>();
+        for (Segment segment : segments) {
+            segment.lock.lock();
+            try {
+                for (Map.Entry<String, Entry> entry : segment.entries.entrySet()) {
+                    if (entry.getValue().expiresAt > now) {
+                        domains.add(entry.getKey());
+                        entries.add(entry.getValue());
+                    }
+                }
+            } finally {
+                segment.lock.unlock();
+            }
+        }
+
+        Path parent = path.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        Path temp = Files.createTempFile(parent, path.getFileName().toString(), ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeInt(SNAPSHOT_MAGIC);
+                out.writeInt(SNAPSHOT_VERSION);
+                out.writeInt(domains.size());
+                for (int i = 0; i < domains.size(); i++) {
+                    out.writeUTF(domains.get(i));
+                    out.writeBoolean(entries.get(i).hasMx);
+                    out.writeLong(entries.get(i).expiresAt);
+                }
+            }
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        return domains.size();
+    }
+
+    /**
+     * Reads verdicts from a snapshot file written by {@link #writeTo(Path)}.
+     * Expired verdicts are dropped, the others keep their remaining time, capped at this cache's TTLs.
+     * Domains already cached keep their current verdict. The whole file is read before any verdict
+     * is added, so a truncated or corrupt snapshot adds nothing.
+     *
+     * @param path the file to read
+     * @return number of verdicts added
+     * @throws IOException if the file cannot be read or is not a complete snapshot
+     */
+    public int readFrom(Path path) throws IOException {
+        long now = clock.millis();
+        List<String> domains = new ArrayList<>();
+        List<Entry> entries = new ArrayList<>();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            if (in.readInt() != SNAPSHOT_MAGIC || in.readInt() != SNAPSHOT_VERSION) {
+                throw new IOException("Not an MX cache snapshot: " + path);
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String domain = in.readUTF();
+                boolean hasMx = in.readBoolean();
+                long expiresAt = Math.min(in.readLong(), now + (hasMx ? maxTtlMillis : negativeTtlMillis));
+                if (expiresAt > now) {
+                    domains.add(domain);
+                    entries.add(new Entry(hasMx, expiresAt));
+                }
+            }
+            if (in.read() != -1) {
+                throw new IOException("Trailing data after MX cache snapshot: " + path);
+            }
+        }
+
+        int added = 0;
+        for (int i = 0; i < domains.size(); i++) {
+            Entry entry = entries.get(i);
+            if (putIfAbsent(domains.get(i), entry.hasMx(), entry.expiresAt(), now)) {
+                added++;
+            }
+        }
+        return added;
+    }
+
+    private boolean putIfAbsent(String domain, boolean hasMx, long expiresAt, long now) {
+        Segment segment = segmentFor(domain);
+        segment.lock.lock();
+        try {
+            Entry current = segment.entries.get(domain);
+            if (current != null && current.expiresAt > now) {
+                return false;
+            }
+            segment.entries.put(domain, new Entry(hasMx, expiresAt));
+            return true;
+        } finally {
+            segment.lock.unlock();
+        }
+    }
+
+    /**
+     * Removes all cached verdicts. Statistics are kept.
+     */
+    public void clear() {
+        for (Segment segment : segments) {
+            segment.lock.lock();
+            try {
+                segment.entries.clear();
+            } finally {
+                segment.lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * @return number of cached domains, including expired ones not yet removed
+     */
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            segment.lock.lock();
+            try {
+                size += segment.entries.size();
+            } finally {
+                segment.lock.unlock();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * @return maximum number of cached domains
+     */
+    public int getMaximumSize() {
+        return maximumSize;
+    }
+
+    /**
+     * @return number of lookups answered from the cache
+     */
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * @return number of lookups not answered from the cache
+     */
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * @return number of domains dropped to stay within the maximum size
+     */
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    /**
+     * @return share of lookups answered from the cache, 0 if there were none
+     */
+    public double getHitRate() {
+        long hitCount = hits.sum();
+        long total = hitCount + misses.sum();
+        return total == 0 ? 0 : (double) hitCount / total;
+    }
+
+    private Segment segmentFor(String domain) {
+        int hash = domain.hashCode();
+        return segments[(hash ^ (hash >>> 16)) & (segments.length - 1)];
+    }
+
+    private record Entry(boolean hasMx, long expiresAt) {
+    }
+
+    private final class Segment {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final LinkedHashMap<String, Entry> entries;
+
+        private Segment(int capacity) {
+            this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                    if (size() > capacity) {
+                        evictions.increment();
+                        return true;
+                    }
+                    return false;
+                }
+            };
+        }
+    }
+}
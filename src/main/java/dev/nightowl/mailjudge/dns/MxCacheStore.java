@@ -0,0 +1,143 @@
+package dev.nightowl.mailjudge.dns;
+
+import lombok.Getter;
+import lombok.extern.java.Log;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps an {@link MxCache} in a snapshot file, so MX verdicts survive restarts.
+ * <p>
+ * {@link #load()} fills the cache from the file, dropping expired verdicts. Snapshots are written
+ * on a schedule in a background daemon thread, and once more when the store is closed or,
+ * for {@link #startDefault(Duration)}, when the JVM shuts down. A missing, unreadable or truncated
+ * file only means a cold cache: nothing of it is loaded.
+ */
+@Log
+public class MxCacheStore implements AutoCloseable {
+    private static final String CACHE_DIR = System.getProperty("user.home") + "/.mailjudge";
+    private static final String SNAPSHOT_FILE = "mx-cache.bin";
+
+    private static MxCacheStore defaultStore;
+
+    @Getter
+    private final MxCache cache;
+
+    /**
+     * The snapshot file.
+     */
+    @Getter
+    private final Path path;
+
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * @param cache the cache to persist
+     * @param path  the snapshot file
+     */
+    public MxCacheStore(MxCache cache, Path path) {
+        this.cache = cache;
+        this.path = path;
+    }
+
+    /**
+     * Persists the {@linkplain MxCache#getDefault() default cache} to {@code ~/.mailjudge/mx-cache.bin}:
+     * loads it now, then saves it at the given interval and on JVM shutdown.
+     * Calling it again only changes the interval.
+     *
+     * @param interval time between snapshots
+     * @return the store of the default cache
+     */
+    public static synchronized MxCacheStore startDefault(Duration interval) {
+        if (defaultStore == null) {
+            defaultStore = new MxCacheStore(MxCache.getDefault(), Paths.get(CACHE_DIR, SNAPSHOT_FILE));
+            defaultStore.load();
+            MxCacheStore store = defaultStore;
+            Runtime.getRuntime().addShutdownHook(new Thread(store::saveQuietly, "mailjudge-mx-cache-shutdown"));
+        }
+        defaultStore.start(interval);
+        return defaultStore;
+    }
+
+    /**
+     * Adds the live verdicts of the snapshot file to the cache.
+     *
+     * @return number of verdicts loaded, 0 if there is no readable snapshot
+     */
+    public int load() {
+        if (!Files.exists(path)) {
+            return 0;
+        }
+        try {
+            int loaded = cache.readFrom(path);
+            log.fine("Loaded " + loaded + " MX verdicts from " + path);
+            return loaded;
+        } catch (IOException e) {
+            log.warning("Failed to load MX cache snapshot: " + e.getMessage());
+            return 0;
+        }
+    }
+
+    /**
+     * Writes the live verdicts of the cache to the snapshot file.
+     *
+     * @return number of verdicts written
+     * @throws IOException if the file cannot be written
+     */
+    public int save() throws IOException {
+        int saved = cache.writeTo(path);
+        log.fine("Saved " + saved + " MX verdicts to " + path);
+        return saved;
+    }
+
+    /**
+     * Starts writing snapshots in a background daemon thread.
+     * Calling it again replaces the previous schedule.
+     *
+     * @param interval time between the end of one snapshot and the start of the next
+     */
+    public synchronized void start(Duration interval) {
+        stop();
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "mailjudge-mx-cache-snapshot");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long millis = interval.toMillis();
+        scheduler.scheduleWithFixedDelay(this::saveQuietly, millis, millis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops writing snapshots. The cache is not affected.
+     */
+    public synchronized void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    /**
+     * Stops writing snapshots and writes a last one.
+     */
+    @Override
+    public void close() {
+        stop();
+        saveQuietly();
+    }
+
+    private void saveQuietly() {
+        try {
+            save();
+        } catch (IOException e) {
+            log.warning("Failed to save MX cache snapshot: " + e.getMessage());
+        }
+    }
+}
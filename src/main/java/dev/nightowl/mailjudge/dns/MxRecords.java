@@ -0,0 +1,28 @@
+package dev.nightowl.mailjudge.dns;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * MX records of a domain.
+ *
+ * @param hosts the mail exchanger host names, empty if the domain does not exist or has no MX records
+ * @param ttl   seconds the answer may be cached for, the lowest TTL of the records
+ */
+public record MxRecords(List<String> hosts, long ttl) {
+    private static final MxRecords NONE = new MxRecords(Collections.emptyList(), 0);
+
+    /**
+     * @return the answer for a domain that does not exist or has no MX records
+     */
+    public static MxRecords none() {
+        return NONE;
+    }
+
+    /**
+     * @return true if there are no MX records
+     */
+    public boolean isEmpty() {
+        return hosts.isEmpty();
+    }
+}
@@ -0,0 +1,19 @@
+package dev.nightowl.mailjudge.dns;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Looks up the MX records of a domain without blocking the calling thread.
+ * <p>
+ * Implementations complete with {@link MxRecords#none()} when the domain does not exist or has no MX records,
+ * which callers may cache, and complete exceptionally on timeouts, server failures and other errors that
+ * may not recur. Callers may cancel the returned future once they lose interest in the answer.
+ */
+@FunctionalInterface
+public interface MxResolver {
+    /**
+     * @param domain the lowercased domain
+     * @return future completing with the MX records of the domain
+     */
+    CompletableFuture<MxRecords> lookupMx(String domain);
+}
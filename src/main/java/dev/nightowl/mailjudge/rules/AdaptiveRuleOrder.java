@@ -0,0 +1,167 @@
+package dev.nightowl.mailjudge.rules;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Learns a quick-fail rule order from the traffic.
+ * <p>
+ * A sample of calls records, per rule, how often it ran, how often it failed and how long it took,
+ * in striped counters. About every {@value #SAMPLES_PER_REORDER} samples the counters are folded into decaying
+ * averages, so recent traffic weighs most, and the rules are reordered by expected cost per rejection
+ * (average cost divided by failure rate), cheapest first. A rule only moves ahead of the rules it
+ * {@linkplain Rule#getDependencies() depends on} once they are placed, and
+ * {@linkplain CostTier#NETWORK network} rules always stay last in their original order.
+ */
+final class AdaptiveRuleOrder {
+    private static final int SAMPLE_RATE = 16;
+    private static final int SAMPLES_PER_REORDER = 1024;
+    private static final double DECAY = 0.5;
+
+    private final List<Rule> rules;
+    private final long[] dependencies;
+    private final long pinnedLast;
+
+    private final LongAdder[] evaluations;
+    private final LongAdder[] failures;
+    private final LongAdder[] nanos;
+    private final LongAdder samples = new LongAdder();
+
+    private final ReentrantLock reorderLock = new ReentrantLock();
+    private final double[] averageEvaluations;
+    private final double[] averageFailures;
+    private final double[] averageNanos;
+
+    private volatile int[] order;
+
+    AdaptiveRuleOrder(List<Rule> rules) {
+        int size = rules.size();
+        this.rules = rules;
+        this.dependencies = new long[size];
+        this.evaluations = new LongAdder[size];
+        this.failures = new LongAdder[size];
+        this.nanos = new LongAdder[size];
+        this.averageEvaluations = new double[size];
+        this.averageFailures = new double[size];
+        this.averageNanos = new double[size];
+
+        long pinned = 0;
+        for (int i = 0; i < size; i++) {
+            Rule rule = rules.get(i);
+            for (int j = 0; j < size; j++) {
+                for (Class<? extends Rule> dependency : rule.getDependencies()) {
+                    if (j != i && dependency.isInstance(rules.get(j))) {
+                        dependencies[i] |= 1L << j;
+                    }
+                }
+            }
+            if (rule.getCostTier() == CostTier.NETWORK) {
+                pinned |= 1L << i;
+            }
+            evaluations[i] = new LongAdder();
+            failures[i] = new LongAdder();
+            nanos[i] = new LongAdder();
+        }
+        this.pinnedLast = pinned;
+
+        // Start from ruleset order with the pinned rules moved last
+        int[] initial = new int[size];
+        int n = 0;
+        for (int i = 0; i < size; i++) {
+            if ((pinned & (1L << i)) == 0) {
+                initial[n++] = i;
+            }
+        }
+        for (int i = 0; i < size; i++) {
+            if ((pinned & (1L << i)) != 0) {
+                initial[n++] = i;
+            }
+        }
+        this.order = initial;
+    }
+
+    /**
+     * @return rule positions in the order to evaluate them
+     */
+    int[] getOrder() {
+        return order;
+    }
+
+    /**
+     * @return true if the current call should be measured
+     */
+    boolean shouldSample() {
+        return ThreadLocalRandom.current().nextInt(SAMPLE_RATE) == 0;
+    }
+
+    /**
+     * Records one measured evaluation of a rule.
+     */
+    void record(int rule, boolean passed, long elapsedNanos) {
+        evaluations[rule].increment();
+        nanos[rule].add(elapsedNanos);
+        if (!passed) {
+            failures[rule].increment();
+        }
+    }
+
+    /**
+     * Marks the end of a measured call, reordering the rules every so many calls.
+     */
+    void sampled() {
+        samples.increment();
+        if (samples.sum() >= SAMPLES_PER_REORDER && reorderLock.tryLock()) {
+            try {
+                // Another thread may have reordered between the check and the lock
+                if (samples.sum() >= SAMPLES_PER_REORDER) {
+                    samples.reset();
+                    reorder();
+                }
+            } finally {
+                reorderLock.unlock();
+            }
+        }
+    }
+
+    private void reorder() {
+        int size = rules.size();
+        double[] ratios = new double[size];
+        for (int i = 0; i < size; i++) {
+            averageEvaluations[i] = averageEvaluations[i] * DECAY + evaluations[i].sumThenReset();
+            averageFailures[i] = averageFailures[i] * DECAY + failures[i].sumThenReset();
+            averageNanos[i] = averageNanos[i] * DECAY + nanos[i].sumThenReset();
+
+            // Smoothed, so rules that rarely run are neither ignored nor trusted too much
+            double failureRate = (averageFailures[i] + 1) / (averageEvaluations[i] + 2);
+            double cost = (averageNanos[i] + 1) / (averageEvaluations[i] + 1);
+            ratios[i] = cost / failureRate;
+        }
+
+        int[] next = new int[size];
+        long placed = 0;
+        for (int n = 0; n < size; n++) {
+            int best = -1;
+            int firstPinned = -1;
+            for (int i = 0; i < size; i++) {
+                long bit = 1L << i;
+                if ((placed & bit) != 0 || (dependencies[i] & ~placed) != 0) {
+                    continue;
+                }
+                if ((pinnedLast & bit) != 0) {
+                    firstPinned = firstPinned == -1 ? i : firstPinned;
+                } else if (best == -1 || ratios[i] < ratios[best]) {
+                    best = i;
+                }
+            }
+            if (best == -1) {
+                // Pinned rules go once nothing else can; circular dependencies fall back to the first rule left
+                best = firstPinned != -1 ? firstPinned : Long.numberOfTrailingZeros(~placed);
+            }
+            next[n] = best;
+            placed |= 1L << best;
+        }
+        order = next;
+    }
+}
@@ -0,0 +1,33 @@
+package dev.nightowl.mailjudge.rules;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A rule that can validate without blocking the calling thread, typically because it waits on I/O.
+ * Asynchronous validation paths start these rules and combine their results once they complete.
+ */
+public interface AsyncRule extends Rule {
+    /**
+     * Starts validating an email address according to this rule.
+     * Implementations must read what they need from the parsed view before returning, since the
+     * view is not guaranteed to stay unchanged while the returned future is pending.
+     *
+     * @param email the parsed email address to validate
+     * @return future completing with true if the email passes this rule, false otherwise
+     */
+    CompletableFuture<Boolean> validateAsync(ParsedEmail email);
+
+    /**
+     * Starts validating an email address within a time budget. Callers cancel the returned future
+     * once the budget runs out, so implementations can use the remaining time to pick cheaper work
+     * or shorter timeouts. By default the budget is ignored.
+     *
+     * @param email     the parsed email address to validate
+     * @param remaining time left before the caller gives up on the result
+     * @return future completing with true if the email passes this rule, false otherwise
+     */
+    default CompletableFuture<Boolean> validateAsync(ParsedEmail email, Duration remaining) {
+        return validateAsync(email);
+    }
+}
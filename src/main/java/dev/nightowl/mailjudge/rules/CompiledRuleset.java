@@ -0,0 +1,545 @@
+package dev.nightowl.mailjudge.rules;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * A ruleset prepared for repeated validation.
+ * <p>
+ * When every rule is one of the built-in syntactic rules, validation runs as a single fused pass
+ * over the address. Otherwise the address is parsed once and the rules are applied one by one.
+ * Both paths give exactly the same results as {@link Ruleset#validate(String)}.
+ * <p>
+ * If the ruleset has a {@linkplain Ruleset#getDomainVerdictCacheSize() domain verdict cache}, the verdicts of
+ * {@linkplain Rule#isDomainScoped() domain-scoped} rules are memoized per
+ * {@linkplain ParsedEmail#getNormalizedDomain() normalized domain} and reused for every address of that domain
+ * until they expire. Network rules are not memoized: a failed lookup may be transient, and they keep caches
+ * of their own that know the difference. With {@linkplain Ruleset#isAdaptiveOrdering() adaptive ordering},
+ * quick-fail validation runs the rules in an order learned from the traffic.
+ * <p>
+ * Rules run by {@linkplain Rule#getCostTier() cost tier}: quick-fail validation runs cheaper tiers first,
+ * and {@linkplain CostTier#NETWORK network} rules only run for addresses that pass every other rule.
+ * Their failures are then reported too; addresses that already fail a cheaper rule are not looked up.
+ * <p>
+ * With {@linkplain Ruleset#isInlineRules() inlined rules}, rulesets that cannot be fused run through a
+ * generated class that calls every rule from its own call site, so the JIT can inline custom rules too.
+ */
+public final class CompiledRuleset {
+    private final Ruleset ruleset;
+    private final List<Rule> rules;
+    private final FusedValidator fused;
+    private final long network;
+    private final int[] tierOrder;
+    private final long memoized;
+    private final DomainVerdictCache domainVerdicts;
+    private final AdaptiveRuleOrder adaptiveOrder;
+    private final RuleChain chain;
+
+    CompiledRuleset(Ruleset ruleset) {
+        this.ruleset = ruleset;
+        this.rules = ruleset.getRules();
+        this.fused = FusedValidator.tryCreate(rules);
+
+        // Verdicts are tracked as bits of a long, so larger rulesets simply run in ruleset order
+        boolean tracked = rules.size() <= Long.SIZE;
+        long scoped = 0;
+        long networkRules = 0;
+        for (int i = 0; tracked && i < rules.size(); i++) {
+            if (rules.get(i).isDomainScoped()) {
+                scoped |= 1L << i;
+            }
+            if (rules.get(i).getCostTier() == CostTier.NETWORK) {
+                networkRules |= 1L << i;
+            }
+        }
+        this.memoized = scoped & ~networkRules;
+        this.network = networkRules;
+        this.tierOrder = tracked ? tierOrder(rules) : null;
+        // The fused pass is cheaper than a cache lookup, and verdicts are tracked as bits of a long
+        boolean memoize = fused == null && memoized != 0 && tracked && ruleset.getDomainVerdictCacheSize() > 0;
+        this.domainVerdicts = memoize
+                ? new DomainVerdictCache(ruleset.getDomainVerdictCacheSize(), ruleset.getDomainVerdictTtl())
+                : null;
+        // A fused pass checks every rule at once, so its order does not matter
+        this.adaptiveOrder = ruleset.isAdaptiveOrdering() && fused == null && rules.size() > 1 && tracked
+                ? new AdaptiveRuleOrder(rules) : null;
+        // The memo and the adaptive order keep per-rule state the generated class has no room for
+        boolean generate = ruleset.isInlineRules() && fused == null && tracked && !rules.isEmpty()
+                && domainVerdicts == null && adaptiveOrder == null;
+        this.chain = generate ? RuleChainGenerator.generate(rules, runOrder(), network) : null;
+    }
+
+    private int[] runOrder() {
+        if (tierOrder != null) {
+            return tierOrder;
+        }
+        int[] order = new int[rules.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        return order;
+    }
+
+    /**
+     * @return rule positions sorted by cost tier, keeping ruleset order within a tier, or null if already sorted
+     */
+    private static int[] tierOrder(List<Rule> rules) {
+        int[] order = new int[rules.size()];
+        int n = 0;
+        for (CostTier tier : CostTier.values()) {
+            for (int i = 0; i < rules.size(); i++) {
+                if (rules.get(i).getCostTier() == tier) {
+                    order[n++] = i;
+                }
+            }
+        }
+        for (int i = 0; i < order.length; i++) {
+            if (order[i] != i) {
+                return order;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return true if rules run through {@link #failures}, rather than one by one in ruleset order
+     */
+    private boolean isTracked(ParsedEmail parsed) {
+        return adaptiveOrder != null || tierOrder != null || network != 0
+                || (domainVerdicts != null && parsed.hasAt());
+    }
+
+    /**
+     * @return the ruleset this was compiled from
+     */
+    public Ruleset getRuleset() {
+        return ruleset;
+    }
+
+    /**
+     * Returns the rules in the order quick-fail validation currently runs them.
+     *
+     * @return the rules by cost tier, then in ruleset order unless adaptive ordering moved them
+     */
+    public List<Rule> getRuleOrder() {
+        int[] order = adaptiveOrder != null ? adaptiveOrder.getOrder() : tierOrder;
+        if (order == null) {
+            return rules;
+        }
+        List<Rule> ordered = new ArrayList<>(rules.size());
+        for (int index : order) {
+            ordered.add(rules.get(index));
+        }
+        return ordered;
+    }
+
+    /**
+     * @return true if validation runs as a single fused pass
+     */
+    public boolean isFused() {
+        return fused != null;
+    }
+
+    /**
+     * @return true if validation runs through a generated class with the rule calls unrolled
+     */
+    public boolean isGenerated() {
+        return chain != null;
+    }
+
+    /**
+     * Validates an email against all rules.
+     *
+     * @param email the email address to validate
+     * @return true if the email passes all rules, false otherwise
+     */
+    public boolean validate(CharSequence email) {
+        if (email == null) {
+            return ruleset.validate((String) null);
+        }
+        if (fused != null) {
+            return fused.validate(email, true) == 0;
+        }
+        ParsedEmail parsed = ParsedEmail.parse(email);
+        if (chain != null) {
+            return chain.firstFailure(parsed) == -1;
+        }
+        if (isTracked(parsed)) {
+            return failures(parsed, true, true) == 0;
+        }
+        return ruleset.validate(parsed);
+    }
+
+    /**
+     * Returns the first rule, in the order rules run, that the email fails.
+     *
+     * @param email the email address to validate, not null
+     * @return the first failing rule, or null if the email passes all rules
+     */
+    public Rule firstFailure(CharSequence email) {
+        return firstFailure(email, null);
+    }
+
+    /**
+     * Returns the first rule, in the order rules run, that the email fails,
+     * parsing into a caller-owned scratch view instead of allocating a new one.
+     *
+     * @param email   the email address to validate, not null
+     * @param scratch view to reuse for parsing, or null to allocate one
+     * @return the first failing rule, or null if the email passes all rules
+     */
+    public Rule firstFailure(CharSequence email, ParsedEmail scratch) {
+        int index = firstFailureIndex(email, scratch);
+        return index == -1 ? null : rules.get(index);
+    }
+
+    /**
+     * Returns the position in the ruleset of the first rule the email fails.
+     *
+     * @param email   the email address to validate, not null
+     * @param scratch view to reuse for parsing, or null to allocate one
+     * @return index of the first failing rule, or -1 if the email passes all rules
+     */
+    public int firstFailureIndex(CharSequence email, ParsedEmail scratch) {
+        if (fused != null) {
+            long failures = fused.validate(email, true);
+            return failures == 0 ? -1 : Long.numberOfTrailingZeros(failures);
+        }
+
+        ParsedEmail parsed = scratch == null ? ParsedEmail.parse(email) : scratch.reset(email);
+        if (chain != null) {
+            return chain.firstFailure(parsed);
+        }
+        if (isTracked(parsed)) {
+            long failures = failures(parsed, true, true);
+            return failures == 0 ? -1 : Long.numberOfTrailingZeros(failures);
+        }
+        for (int i = 0; i < rules.size(); i++) {
+            if (!rules.get(i).validate(parsed)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the error messages of all rules the email fails, in ruleset order.
+     * Network rules only run if every other rule passes.
+     *
+     * @param email the email address to validate, not null
+     * @return the error messages, empty if the email passes all rules
+     */
+    public List<String> errors(CharSequence email) {
+        return errors(email, null);
+    }
+
+    /**
+     * Returns the error messages of all rules the email fails, in ruleset order,
+     * parsing into a caller-owned scratch view instead of allocating a new one.
+     *
+     * @param email   the email address to validate, not null
+     * @param scratch view to reuse for parsing, or null to allocate one
+     * @return the error messages, empty if the email passes all rules
+     */
+    public List<String> errors(CharSequence email, ParsedEmail scratch) {
+        if (rules.size() <= Long.SIZE) {
+            return errorMessages(failureMask(email, scratch));
+        }
+
+        ParsedEmail parsed = scratch == null ? ParsedEmail.parse(email) : scratch.reset(email);
+        List<String> errors = new ArrayList<>();
+        for (Rule rule : rules) {
+            if (!rule.validate(parsed)) {
+                errors.add(rule.getErrorMessage());
+            }
+        }
+        return errors;
+    }
+
+    /**
+     * Returns which rules the email fails as a bit mask over ruleset positions: bit {@code i} is set
+     * if the rule at position {@code i} fails. Network rules only run if every other rule passes.
+     * With a scratch view and without a domain verdict cache, this allocates nothing for ASCII input.
+     *
+     * @param email   the email address to validate, not null
+     * @param scratch view to reuse for parsing, or null to allocate one
+     * @return bit mask of the failing rule positions, 0 if the email passes all rules
+     * @throws IllegalStateException if the ruleset has more than 64 rules
+     */
+    public long failureMask(CharSequence email, ParsedEmail scratch) {
+        if (fused != null) {
+            return fused.validate(email, false);
+        }
+        if (rules.size() > Long.SIZE) {
+            throw new IllegalStateException("Failure masks need a ruleset of at most 64 rules, got " + rules.size());
+        }
+
+        ParsedEmail parsed = scratch == null ? ParsedEmail.parse(email) : scratch.reset(email);
+        if (chain != null) {
+            return chain.failures(parsed);
+        }
+        if (isTracked(parsed)) {
+            return failures(parsed, false, true);
+        }
+        long failures = 0;
+        for (int i = 0; i < rules.size(); i++) {
+            if (!rules.get(i).validate(parsed)) {
+                failures |= 1L << i;
+            }
+        }
+        return failures;
+    }
+
+    /**
+     * Returns the error codes of the rules in a failure mask.
+     *
+     * @param failureMask bit mask of failing rule positions, as returned by {@link #failureMask}
+     * @return the distinct error codes
+     */
+    public Set<ErrorCode> errorCodes(long failureMask) {
+        Set<ErrorCode> codes = EnumSet.noneOf(ErrorCode.class);
+        for (; failureMask != 0; failureMask &= failureMask - 1) {
+            codes.add(rules.get(Long.numberOfTrailingZeros(failureMask)).getErrorCode());
+        }
+        return codes;
+    }
+
+    /**
+     * Returns the error messages of the rules in a failure mask, in ruleset order.
+     *
+     * @param failures bit mask of failing rule positions, as returned by {@link #failureMask}
+     * @return the error messages, empty if the mask is 0
+     */
+    public List<String> errorMessages(long failures) {
+        if (failures == 0) {
+            return Collections.emptyList();
+        }
+        List<String> errors = new ArrayList<>(Long.bitCount(failures));
+        for (; failures != 0; failures &= failures - 1) {
+            errors.add(rules.get(Long.numberOfTrailingZeros(failures)).getErrorMessage());
+        }
+        return errors;
+    }
+
+    /**
+     * Runs the rules by cost tier, answering domain-scoped rules from the domain verdict cache and recording
+     * the verdicts of those that had to be evaluated. Network rules, which every order puts last, only run
+     * if no other rule failed. Quick runs follow the adaptive order, if there is one, and measure a sample
+     * of the calls for it.
+     *
+     * @param parsed         the parsed email address
+     * @param quick          stop at the first failing rule
+     * @param includeNetwork whether to run network rules at all
+     * @return bit mask of the failing rule positions, 0 if the email passes all rules
+     */
+    private long failures(ParsedEmail parsed, boolean quick, boolean includeNetwork) {
+        String domain = domainVerdicts != null && parsed.hasAt() ? parsed.getNormalizedDomain() : null;
+        DomainVerdictCache.Verdicts cached = domain == null ? null : domainVerdicts.get(domain);
+        long known = cached == null ? 0 : cached.known();
+        long cachedFailures = cached == null ? 0 : cached.failed();
+        int[] order = quick && adaptiveOrder != null ? adaptiveOrder.getOrder() : tierOrder;
+        boolean sample = quick && adaptiveOrder != null && adaptiveOrder.shouldSample();
+
+        long evaluated = 0;
+        long evaluatedFailures = 0;
+        long failures = 0;
+        for (int n = 0; n < rules.size(); n++) {
+            int i = order == null ? n : order[n];
+            long bit = 1L << i;
+            if ((network & bit) != 0 && (failures != 0 || !includeNetwork)) {
+                break;
+            }
+            boolean passed;
+            if ((known & bit) != 0) {
+                passed = (cachedFailures & bit) == 0;
+            } else {
+                long start = sample ? System.nanoTime() : 0;
+                passed = rules.get(i).validate(parsed);
+                if (sample) {
+                    adaptiveOrder.record(i, passed, System.nanoTime() - start);
+                }
+                if (domain != null && (memoized & bit) != 0) {
+                    evaluated |= bit;
+                    evaluatedFailures |= passed ? 0 : bit;
+                }
+            }
+            if (!passed) {
+                failures |= bit;
+                if (quick) {
+                    break;
+                }
+            }
+        }
+
+        if (evaluated != 0) {
+            domainVerdicts.add(domain, evaluated, evaluatedFailures);
+        }
+        if (sample) {
+            adaptiveOrder.sampled();
+        }
+        return failures;
+    }
+
+    /**
+     * Returns the error messages of all rules the email fails, without blocking on network rules.
+     * Other rules run on the calling thread. If they all pass, {@link AsyncRule}s are started and
+     * synchronous network rules are run on the common {@link ForkJoinPool}; their results are combined
+     * once they complete.
+     *
+     * @param email the email address to validate, not null
+     * @return future completing with the error messages in ruleset order, empty if the email passes all rules
+     */
+    public CompletableFuture<List<String>> errorsAsync(CharSequence email) {
+        return errorsAsync(email, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Returns the error messages of all rules the email fails, without blocking on network rules.
+     * Other rules run on the calling thread. If they all pass, {@link AsyncRule}s are started and
+     * synchronous network rules are run on the given executor; their results are combined once they complete.
+     *
+     * @param email    the email address to validate, not null
+     * @param executor runs network rules that can only block
+     * @return future completing with the error messages in ruleset order, empty if the email passes all rules
+     */
+    public CompletableFuture<List<String>> errorsAsync(CharSequence email, Executor executor) {
+        return errorsAsync(email, executor, null);
+    }
+
+    /**
+     * Returns the error messages of all rules the email fails, giving up on network rules once the
+     * budget runs out. Rules see the remaining budget through {@link AsyncRule#validateAsync(ParsedEmail, Duration)};
+     * rules still pending when it runs out are cancelled. If a network rule that completed in time failed,
+     * the email is invalid regardless of the others; otherwise the verdict is unknown and the returned
+     * future completes exceptionally, with a {@link TimeoutException} if the budget ran out or with the
+     * error of a network rule that could not reach a verdict.
+     * <p>
+     * Rules other than network rules run on the calling thread and are not interrupted by the budget.
+     *
+     * @param email    the email address to validate, not null
+     * @param executor runs network rules that can only block
+     * @param budget   the time the network rules may take, or null for no limit
+     * @return future completing with the error messages in ruleset order, empty if the email passes all rules
+     */
+    public CompletableFuture<List<String>> errorsAsync(CharSequence email, Executor executor, Duration budget) {
+        if (network == 0) {
+            return CompletableFuture.completedFuture(errors(email));
+        }
+        return failureMaskAsync(email, false, executor, budget).thenApply(this::errorMessages);
+    }
+
+    /**
+     * Returns which rules the email fails as a bit mask, like {@link #failureMask}, without blocking on network
+     * rules and giving up on them once the budget runs out, like {@link #errorsAsync(CharSequence, Executor, Duration)}.
+     * In quick mode the mask has at most one bit: the first failure in the order rules run.
+     *
+     * @param email    the email address to validate, not null
+     * @param quick    report only the first failing rule
+     * @param executor runs network rules that can only block
+     * @param budget   the time the network rules may take, or null for no limit
+     * @return future completing with the bit mask of the failing rule positions, 0 if the email passes all rules
+     * @throws IllegalStateException if the ruleset has more than 64 rules
+     */
+    public CompletableFuture<Long> failureMaskAsync(CharSequence email, boolean quick, Executor executor,
+                                                    Duration budget) {
+        long start = System.nanoTime();
+        if (rules.size() > Long.SIZE) {
+            throw new IllegalStateException("Failure masks need a ruleset of at most 64 rules, got " + rules.size());
+        }
+        if (network == 0) {
+            if (!quick) {
+                return CompletableFuture.completedFuture(failureMask(email, null));
+            }
+            int index = firstFailureIndex(email, null);
+            return CompletableFuture.completedFuture(index == -1 ? 0L : 1L << index);
+        }
+
+        ParsedEmail parsed = ParsedEmail.parse(email);
+        long failures = failures(parsed, quick, false);
+        if (failures != 0) {
+            return CompletableFuture.completedFuture(failures);
+        }
+
+        long remainingNanos = budget == null ? Long.MAX_VALUE : budget.toNanos() - (System.nanoTime() - start);
+        if (remainingNanos <= 0) {
+            return CompletableFuture.failedFuture(new TimeoutException("Validation budget exhausted"));
+        }
+        Duration remaining = budget == null ? null : Duration.ofNanos(remainingNanos);
+
+        List<CompletableFuture<Boolean>> pending = new ArrayList<>(Collections.nCopies(rules.size(), null));
+        List<CompletableFuture<Boolean>> started = new ArrayList<>();
+        for (long left = network; left != 0; left &= left - 1) {
+            int i = Long.numberOfTrailingZeros(left);
+            Rule rule = rules.get(i);
+            CompletableFuture<Boolean> future;
+            if (rule instanceof AsyncRule) {
+                future = remaining == null
+                        ? ((AsyncRule) rule).validateAsync(parsed)
+                        : ((AsyncRule) rule).validateAsync(parsed, remaining);
+            } else {
+                future = CompletableFuture.supplyAsync(() -> rule.validate(parsed), executor);
+            }
+            pending.set(i, future);
+            started.add(future);
+        }
+
+        CompletableFuture<Void> all = CompletableFuture.allOf(started.toArray(new CompletableFuture<?>[0]));
+        if (remaining != null) {
+            all = all.orTimeout(remainingNanos, TimeUnit.NANOSECONDS);
+        }
+        return all.handle((ignored, error) -> {
+            long networkFailures = 0;
+            boolean complete = true;
+            for (long left = network; left != 0; left &= left - 1) {
+                int i = Long.numberOfTrailingZeros(left);
+                long bit = 1L << i;
+                CompletableFuture<Boolean> future = pending.get(i);
+                if (!future.isDone()) {
+                    future.cancel(true);
+                    complete = false;
+                } else if (!future.isCompletedExceptionally()) {
+                    networkFailures |= future.join() ? 0 : bit;
+                } else {
+                    complete = false;
+                }
+            }
+            if (networkFailures != 0) {
+                // Network rules keep ruleset order whatever the order of the others
+                return quick ? lowestBit(networkFailures) : networkFailures;
+            }
+            if (error != null) {
+                throw new CompletionException(unwrap(error));
+            }
+            if (!complete) {
+                throw new CompletionException(new TimeoutException("Validation budget exhausted"));
+            }
+            return 0L;
+        });
+    }
+
+    /**
+     * @return true if the ruleset has {@linkplain CostTier#NETWORK network} rules, which
+     * {@link #failureMaskAsync} runs without blocking
+     */
+    public boolean hasNetworkRules() {
+        return network != 0;
+    }
+
+    private static long lowestBit(long mask) {
+        return mask & -mask;
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+    }
+}
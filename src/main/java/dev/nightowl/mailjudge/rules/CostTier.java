@@ -0,0 +1,22 @@
+package dev.nightowl.mailjudge.rules;
+
+/**
+ * How expensive a rule is to evaluate, from cheapest to most expensive.
+ * Rulesets run cheaper tiers first and only run the network tier for addresses that pass the others.
+ */
+public enum CostTier {
+    /**
+     * Pure computation on the address, such as a character scan.
+     */
+    CPU,
+
+    /**
+     * A lookup in an in-memory data structure, such as a domain list.
+     */
+    MEMORY,
+
+    /**
+     * Waits on the network, such as a DNS lookup.
+     */
+    NETWORK
+}
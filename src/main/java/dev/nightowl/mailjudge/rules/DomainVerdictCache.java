@@ -0,0 +1,115 @@
+package dev.nightowl.mailjudge.rules;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounded, concurrent memo of domain-scoped rule verdicts per normalized domain.
+ * <p>
+ * Each entry holds two bit masks over rule positions: the rules evaluated so far for the domain,
+ * and which of those failed. Quick validation stops at the first failure, so an entry can be filled
+ * in over several calls. Entries expire after a fixed time, since verdicts such as the disposable list
+ * or MX records change. Like {@code MxCache}, the map is split into LRU segments with their own locks.
+ */
+final class DomainVerdictCache {
+    private static final int SEGMENTS = 16;
+
+    private final Segment[] segments;
+    private final long ttlNanos;
+
+    DomainVerdictCache(int maximumSize, Duration ttl) {
+        if (maximumSize <= 0) {
+            throw new IllegalArgumentException("maximumSize must be positive");
+        }
+        this.ttlNanos = ttl.toNanos();
+
+        int segmentCapacity = (maximumSize + SEGMENTS - 1) / SEGMENTS;
+        this.segments = new Segment[SEGMENTS];
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment(segmentCapacity);
+        }
+    }
+
+    /**
+     * @param domain the lowercased domain
+     * @return the live verdicts for the domain, or null if none are cached
+     */
+    Verdicts get(String domain) {
+        Segment segment = segmentFor(domain);
+        segment.lock.lock();
+        try {
+            Verdicts verdicts = segment.entries.get(domain);
+            if (verdicts != null && verdicts.expiresAt - System.nanoTime() <= 0) {
+                segment.entries.remove(domain);
+                return null;
+            }
+            return verdicts;
+        } finally {
+            segment.lock.unlock();
+        }
+    }
+
+    /**
+     * Adds newly evaluated verdicts to the entry of a domain.
+     *
+     * @param domain the lowercased domain
+     * @param known  positions of the rules that were evaluated
+     * @param failed positions of the evaluated rules that failed
+     */
+    void add(String domain, long known, long failed) {
+        Segment segment = segmentFor(domain);
+        segment.lock.lock();
+        try {
+            Verdicts previous = segment.entries.get(domain);
+            long now = System.nanoTime();
+            if (previous == null || previous.expiresAt - now <= 0) {
+                segment.entries.put(domain, new Verdicts(known, failed, now + ttlNanos));
+            } else {
+                segment.entries.put(domain, new Verdicts(previous.known | known,
+                        (previous.failed & ~known) | failed, previous.expiresAt));
+            }
+        } finally {
+            segment.lock.unlock();
+        }
+    }
+
+    /**
+     * @return number of cached domains, including expired ones not yet removed
+     */
+    int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            segment.lock.lock();
+            try {
+                size += segment.entries.size();
+            } finally {
+                segment.lock.unlock();
+            }
+        }
+        return size;
+    }
+
+    private Segment segmentFor(String domain) {
+        int hash = domain.hashCode();
+        return segments[(hash ^ (hash >>> 16)) & (SEGMENTS - 1)];
+    }
+
+    record Verdicts(long known, long failed, long expiresAt) {
+    }
+
+    private static final class Segment {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final LinkedHashMap<String, Verdicts> entries;
+
+        private Segment(int capacity) {
+            this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Verdicts> eldest) {
+                    return size() > capacity;
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package dev.nightowl.mailjudge.rules;
+
+/**
+ * Stable identifier of why an email address failed a rule, for callers that need to tell failures
+ * apart without comparing error messages. Constants are only ever added, never renamed or reordered.
+ */
+public enum ErrorCode {
+    /**
+     * Malformed address, such as a missing or repeated {@code @}.
+     */
+    SYNTAX,
+    /**
+     * Address, local part or domain too long.
+     */
+    LENGTH,
+    /**
+     * Invalid local part.
+     */
+    LOCAL_PART,
+    /**
+     * Invalid domain.
+     */
+    DOMAIN,
+    /**
+     * Invalid top-level domain.
+     */
+    TLD,
+    /**
+     * Domain of a disposable email provider.
+     */
+    DISPOSABLE,
+    /**
+     * Domain without MX records.
+     */
+    NO_MX,
+    /**
+     * Failure of a rule that does not declare its own code.
+     */
+    CUSTOM
+}
@@ -0,0 +1,216 @@
+package dev.nightowl.mailjudge.rules;
+
+import dev.nightowl.mailjudge.rules.impl.DomainRule;
+import dev.nightowl.mailjudge.rules.impl.LengthRule;
+import dev.nightowl.mailjudge.rules.impl.LocalPartRule;
+import dev.nightowl.mailjudge.rules.impl.SyntaxRule;
+import dev.nightowl.mailjudge.rules.impl.TldRule;
+
+import java.util.List;
+
+/**
+ * Single-pass validator for rulesets made only of the built-in syntactic rules.
+ * <p>
+ * One left-to-right scan collects everything {@link SyntaxRule}, {@link LengthRule},
+ * {@link LocalPartRule}, {@link DomainRule} and {@link TldRule} look at, using a lookup table
+ * for the character classes. The verdict of every rule is then derived from those facts,
+ * giving exactly the same results as running the rules one by one.
+ */
+final class FusedValidator {
+    private static final int MAX_RULES = 64;
+
+    private static final int SYNTAX = 0;
+    private static final int LENGTH = 1;
+    private static final int LOCAL_PART = 2;
+    private static final int DOMAIN = 3;
+    private static final int TLD = 4;
+
+    private static final byte LOCAL_CHAR = 1;
+    private static final byte DOMAIN_CHAR = 2;
+    private static final byte LETTER = 4;
+
+    private static final byte[] CHAR_CLASSES = new byte[128];
+
+    static {
+        for (char c = 'a'; c <= 'z'; c++) {
+            CHAR_CLASSES[c] = LOCAL_CHAR | DOMAIN_CHAR | LETTER;
+            CHAR_CLASSES[Character.toUpperCase(c)] = LOCAL_CHAR | DOMAIN_CHAR | LETTER;
+        }
+        for (char c = '0'; c <= '9'; c++) {
+            CHAR_CLASSES[c] = LOCAL_CHAR | DOMAIN_CHAR;
+        }
+        CHAR_CLASSES['.'] = LOCAL_CHAR | DOMAIN_CHAR;
+        CHAR_CLASSES['-'] = LOCAL_CHAR | DOMAIN_CHAR;
+        CHAR_CLASSES['_'] = LOCAL_CHAR;
+        CHAR_CLASSES['+'] = LOCAL_CHAR;
+    }
+
+    private final int[] kinds;
+    private final boolean syntaxFirst;
+    private final int[] maxLength;
+    private final int[] maxLocalLength;
+    private final int[] maxDomainLength;
+    private final int[] minTldLength;
+
+    private FusedValidator(List<Rule> rules) {
+        int size = rules.size();
+        this.syntaxFirst = rules.get(0).getClass() == SyntaxRule.class;
+        this.kinds = new int[size];
+        this.maxLength = new int[size];
+        this.maxLocalLength = new int[size];
+        this.maxDomainLength = new int[size];
+        this.minTldLength = new int[size];
+    }
+
+    /**
+     * Creates a fused validator for the given rules.
+     *
+     * @param rules the rules to fuse
+     * @return the fused validator, or null if any rule is not one of the built-in syntactic rules
+     */
+    static FusedValidator tryCreate(List<Rule> rules) {
+        if (rules.isEmpty() || rules.size() > MAX_RULES) {
+            return null;
+        }
+
+        FusedValidator fused = new FusedValidator(rules);
+        for (int i = 0; i < rules.size(); i++) {
+            Rule rule = rules.get(i);
+            // Exact class checks: a subclass may override validate
+            Class<?> type = rule.getClass();
+            if (type == SyntaxRule.class) {
+                fused.kinds[i] = SYNTAX;
+            } else if (type == LengthRule.class) {
+                LengthRule lengthRule = (LengthRule) rule;
+                fused.kinds[i] = LENGTH;
+                fused.maxLength[i] = lengthRule.getMaxLength();
+                fused.maxLocalLength[i] = lengthRule.getMaxLocalLength();
+                fused.maxDomainLength[i] = lengthRule.getMaxDomainLength();
+            } else if (type == LocalPartRule.class) {
+                fused.kinds[i] = LOCAL_PART;
+            } else if (type == DomainRule.class) {
+                fused.kinds[i] = DOMAIN;
+            } else if (type == TldRule.class) {
+                fused.kinds[i] = TLD;
+                fused.minTldLength[i] = ((TldRule) rule).getMinTldLength();
+            } else {
+                return null;
+            }
+        }
+        return fused;
+    }
+
+    /**
+     * Validates an email against all fused rules in one pass.
+     *
+     * @param email the email address, not null
+     * @param quick stop at the first failing rule
+     * @return bit mask of the failing rule positions, 0 if the email passes all rules
+     */
+    long validate(CharSequence email, boolean quick) {
+        int length = email.length();
+        int i = 0;
+
+        // Local part: everything before the first '@'
+        int atIndex = -1;
+        int localClasses = LOCAL_CHAR;
+        boolean localValid = true;
+        char previousChar = '\0';
+        for (; i < length; i++) {
+            char c = email.charAt(i);
+            if (c == '@') {
+                atIndex = i;
+                i++;
+                break;
+            }
+            if (c == '.' && previousChar == '.') {
+                localValid = false;
+            }
+            localClasses &= c < 128 ? CHAR_CLASSES[c] : 0;
+            previousChar = c;
+        }
+
+        // Domain: everything after the first '@'
+        int domainClasses = DOMAIN_CHAR;
+        int tldClasses = LETTER;
+        boolean domainValid = true;
+        boolean singleAt = true;
+        int lastDotIndex = -1;
+        previousChar = '\0';
+        for (; i < length; i++) {
+            char c = email.charAt(i);
+            int charClass = c < 128 ? CHAR_CLASSES[c] : 0;
+            if (c == '.') {
+                if (previousChar == '-' || previousChar == '.') {
+                    domainValid = false;
+                }
+                lastDotIndex = i;
+                tldClasses = LETTER;
+            } else {
+                if (c == '-' && previousChar == '.') {
+                    domainValid = false;
+                }
+                if (c == '@') {
+                    if (quick && syntaxFirst) {
+                        // A second '@' already decides the first rule
+                        return 1L;
+                    }
+                    singleAt = false;
+                }
+                tldClasses &= charClass;
+            }
+            domainClasses &= charClass;
+            previousChar = c;
+        }
+        localValid &= localClasses != 0;
+        domainValid &= domainClasses != 0;
+        boolean tldLetters = tldClasses != 0;
+
+        boolean hasAt = atIndex != -1;
+        boolean hasDomain = hasAt && atIndex != length - 1;
+        int localLength = atIndex;
+        int domainLength = length - atIndex - 1;
+        int tldLength = length - lastDotIndex - 1;
+
+        boolean syntax = atIndex > 0 && singleAt && hasDomain;
+        boolean localPart = atIndex > 0 && localValid
+                && email.charAt(0) != '.' && email.charAt(atIndex - 1) != '.';
+        boolean domain = hasDomain && lastDotIndex != -1 && domainValid
+                && !isDotOrHyphen(email.charAt(atIndex + 1)) && !isDotOrHyphen(email.charAt(length - 1));
+        boolean tld = hasAt && lastDotIndex != -1 && tldLength > 0 && tldLetters;
+
+        long failures = 0;
+        for (int rule = 0; rule < kinds.length; rule++) {
+            boolean passed;
+            switch (kinds[rule]) {
+                case SYNTAX:
+                    passed = syntax;
+                    break;
+                case LENGTH:
+                    passed = hasAt && length <= maxLength[rule]
+                            && localLength <= maxLocalLength[rule] && domainLength <= maxDomainLength[rule];
+                    break;
+                case LOCAL_PART:
+                    passed = localPart;
+                    break;
+                case DOMAIN:
+                    passed = domain;
+                    break;
+                default:
+                    passed = tld && tldLength >= minTldLength[rule];
+                    break;
+            }
+            if (!passed) {
+                failures |= 1L << rule;
+                if (quick) {
+                    return failures;
+                }
+            }
+        }
+        return failures;
+    }
+
+    private static boolean isDotOrHyphen(char c) {
+        return c == '.' || c == '-';
+    }
+}
@@ -0,0 +1,233 @@
+package dev.nightowl.mailjudge.rules;
+
+/**
+ * An email address parsed once into offsets.
+ * <p>
+ * A ruleset parses each address a single time and hands the same view to every rule,
+ * so rules read the positions of the {@code @} and the domain dots instead of scanning
+ * the string again. Local part and domain substrings are only created when a rule asks for them.
+ * The address can be any {@link CharSequence}, such as a view over raw bytes; a String is only
+ * built when {@link #getEmail()} is called.
+ */
+public final class ParsedEmail {
+    private CharSequence email;
+    private String emailString;
+    private int atIndex;
+    private int lastAtIndex;
+    private int firstDomainDotIndex;
+    private int lastDotIndex;
+    private int domainDotCount;
+
+    private String localPart;
+    private String domain;
+    private String normalizedDomain;
+
+    /**
+     * Creates an empty view to be filled with {@link #reset(CharSequence)}.
+     * Batch workers keep one such instance and reuse it for every address they validate.
+     */
+    public ParsedEmail() {
+    }
+
+    /**
+     * Parses an email address in a single pass.
+     *
+     * @param email the email address, not null
+     * @return the parsed view
+     */
+    public static ParsedEmail parse(CharSequence email) {
+        return new ParsedEmail().reset(email);
+    }
+
+    /**
+     * Re-parses this view for another email address, discarding the previous one.
+     *
+     * @param email the email address, not null
+     * @return this view
+     */
+    public ParsedEmail reset(CharSequence email) {
+        int at = -1;
+        int lastAt = -1;
+        int firstDot = -1;
+        int lastDot = -1;
+        int dots = 0;
+
+        for (int i = 0; i < email.length(); i++) {
+            char c = email.charAt(i);
+            if (c == '@') {
+                if (at == -1) {
+                    at = i;
+                }
+                lastAt = i;
+            } else if (c == '.' && at != -1) {
+                if (firstDot == -1) {
+                    firstDot = i;
+                }
+                lastDot = i;
+                dots++;
+            }
+        }
+
+        this.email = email;
+        this.emailString = email instanceof String ? (String) email : null;
+        this.atIndex = at;
+        this.lastAtIndex = lastAt;
+        this.firstDomainDotIndex = firstDot;
+        this.lastDotIndex = lastDot;
+        this.domainDotCount = dots;
+        this.localPart = null;
+        this.domain = null;
+        this.normalizedDomain = null;
+        return this;
+    }
+
+    /**
+     * @return the original email address
+     */
+    public String getEmail() {
+        if (emailString == null) {
+            emailString = email.toString();
+        }
+        return emailString;
+    }
+
+    /**
+     * @return the email address as it was passed in, without converting it to a String
+     */
+    public CharSequence getSequence() {
+        return email;
+    }
+
+    /**
+     * @return the length of the email address
+     */
+    public int length() {
+        return email.length();
+    }
+
+    /**
+     * @param index position in the email address
+     * @return the character at the given position
+     */
+    public char charAt(int index) {
+        return email.charAt(index);
+    }
+
+    /**
+     * @return index of the first {@code @}, or -1 if there is none
+     */
+    public int getAtIndex() {
+        return atIndex;
+    }
+
+    /**
+     * @return index of the last {@code @}, or -1 if there is none
+     */
+    public int getLastAtIndex() {
+        return lastAtIndex;
+    }
+
+    /**
+     * @return true if the address contains an {@code @}
+     */
+    public boolean hasAt() {
+        return atIndex != -1;
+    }
+
+    /**
+     * @return index where the domain starts (after the first {@code @}), or -1 if there is no {@code @}
+     */
+    public int getDomainStart() {
+        return atIndex == -1 ? -1 : atIndex + 1;
+    }
+
+    /**
+     * @return length of the local part, or -1 if there is no {@code @}
+     */
+    public int getLocalLength() {
+        return atIndex;
+    }
+
+    /**
+     * @return length of the domain, or -1 if there is no {@code @}
+     */
+    public int getDomainLength() {
+        return atIndex == -1 ? -1 : email.length() - atIndex - 1;
+    }
+
+    /**
+     * @return index of the first dot after the first {@code @}, or -1 if there is none
+     */
+    public int getFirstDomainDotIndex() {
+        return firstDomainDotIndex;
+    }
+
+    /**
+     * @return index of the last dot after the first {@code @} (the start of the TLD), or -1 if there is none
+     */
+    public int getLastDotIndex() {
+        return lastDotIndex;
+    }
+
+    /**
+     * @return number of dot-separated labels in the domain, or 0 if there is no {@code @}
+     */
+    public int getLabelCount() {
+        return atIndex == -1 ? 0 : domainDotCount + 1;
+    }
+
+    /**
+     * @return the part before the first {@code @}, or null if there is no {@code @}
+     */
+    public String getLocalPart() {
+        if (localPart == null && atIndex != -1) {
+            localPart = email.subSequence(0, atIndex).toString();
+        }
+        return localPart;
+    }
+
+    /**
+     * @return the part after the first {@code @}, or null if there is no {@code @}
+     */
+    public String getDomain() {
+        if (domain == null && atIndex != -1) {
+            domain = email.subSequence(atIndex + 1, email.length()).toString();
+        }
+        return domain;
+    }
+
+    /**
+     * Only ASCII letters are lowercased, whatever the default locale, so the result is safe to send to DNS
+     * and no two domains that rules may judge differently share it.
+     *
+     * @return the domain with ASCII letters lowercased, or null if there is no {@code @}
+     */
+    public String getNormalizedDomain() {
+        if (normalizedDomain == null && atIndex != -1) {
+            normalizedDomain = toAsciiLowerCase(getDomain());
+        }
+        return normalizedDomain;
+    }
+
+    private static String toAsciiLowerCase(String value) {
+        int i = 0;
+        while (i < value.length() && (value.charAt(i) < 'A' || value.charAt(i) > 'Z')) {
+            i++;
+        }
+        if (i == value.length()) {
+            return value;
+        }
+        char[] chars = value.toCharArray();
+        for (; i < chars.length; i++) {
+            if (chars[i] >= 'A' && chars[i] <= 'Z') {
+                chars[i] += 'a' - 'A';
+            }
+        }
+        return new String(chars);
+    }
+
+    @Override
+    public String toString() {
+        return getEmail();
+    }
+}
@@ -1,5 +1,8 @@
 package dev.nightowl.mailjudge.rules;
 
+import java.util.Collections;
+import java.util.Set;
+
 /**
  * Base interface for email validation rules.
  */
@@ -12,6 +15,62 @@ public interface Rule {
      */
     boolean validate(String email);
 
+    /**
+     * Validates an email address that has already been parsed.
+     * Rulesets parse each address once and pass the same view to every rule.
+     * Defaults to {@link #validate(String)}, so existing rules keep working unchanged.
+     * The view may be reused for the next address once this method returns, so rules must not keep it.
+     *
+     * @param email the parsed email address to validate
+     * @return true if the email passes this rule, false otherwise
+     */
+    default boolean validate(ParsedEmail email) {
+        return validate(email.getEmail());
+    }
+
+    /**
+     * Tells whether the verdict of this rule depends only on the domain, with ASCII letters compared
+     * case-insensitively; any other character, including those that lowercase to ASCII letters, counts as is.
+     * Compiled rulesets with a domain verdict cache, and batches, reuse such verdicts for every address
+     * with the same {@linkplain ParsedEmail#getNormalizedDomain() normalized domain}.
+     * Addresses without an {@code @} are always validated directly.
+     *
+     * @return true if the rule only looks at the domain, false by default
+     */
+    default boolean isDomainScoped() {
+        return false;
+    }
+
+    /**
+     * Tells how expensive this rule is. Rulesets run cheaper tiers first, and network rules only
+     * for addresses that pass every cheaper rule.
+     *
+     * @return the cost tier, {@link CostTier#NETWORK} for {@link AsyncRule}s and {@link CostTier#CPU} otherwise
+     */
+    default CostTier getCostTier() {
+        return this instanceof AsyncRule ? CostTier.NETWORK : CostTier.CPU;
+    }
+
+    /**
+     * Rules that must run before this one when a ruleset reorders its rules for quick-fail validation,
+     * for rules that only make sense on input the others accept.
+     *
+     * @return types of the rules this rule relies on, none by default
+     */
+    default Set<Class<? extends Rule>> getDependencies() {
+        return Collections.emptySet();
+    }
+
+    /**
+     * Returns a stable code for failures of this rule, so callers can tell them apart without
+     * comparing messages.
+     *
+     * @return the error code, {@link ErrorCode#CUSTOM} by default
+     */
+    default ErrorCode getErrorCode() {
+        return ErrorCode.CUSTOM;
+    }
+
     /**
      * Returns a descriptive error message when validation fails.
      *
@@ -0,0 +1,22 @@
+package dev.nightowl.mailjudge.rules;
+
+/**
+ * Runs the rules of a ruleset in a fixed order, as generated by {@link RuleChainGenerator}.
+ */
+interface RuleChain {
+    /**
+     * Runs all rules. Network rules only run if every other rule passes.
+     *
+     * @param email the parsed email address
+     * @return bit mask of the failing rule positions, 0 if the email passes all rules
+     */
+    long failures(ParsedEmail email);
+
+    /**
+     * Runs the rules until one fails.
+     *
+     * @param email the parsed email address
+     * @return position of the first failing rule, or -1 if the email passes all rules
+     */
+    int firstFailure(ParsedEmail email);
+}
@@ -0,0 +1,410 @@
+package dev.nightowl.mailjudge.rules;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Emits a hidden class per ruleset that calls every rule from its own call site.
+ * <p>
+ * A loop over {@code List<Rule>} calls {@link Rule#validate(ParsedEmail)} from a single site that sees
+ * every rule type, so the JIT can inline none of them once built-in and custom rules are mixed. The
+ * generated class holds each rule in a final field and unrolls the loop, so every site sees one type
+ * and the call can be inlined. The class file is written by hand, as the JDK has no public bytecode API
+ * before Java 24; it only needs a handful of instructions.
+ */
+final class RuleChainGenerator {
+    private static final String RULE = "dev/nightowl/mailjudge/rules/Rule";
+    private static final String PARSED_EMAIL = "dev/nightowl/mailjudge/rules/ParsedEmail";
+    private static final String CHAIN = "dev/nightowl/mailjudge/rules/RuleChain";
+    private static final String GENERATED = "dev/nightowl/mailjudge/rules/GeneratedRuleChain";
+
+    // Class file version of Java 17
+    private static final int VERSION = 61;
+    private static final int ACC_PUBLIC = 0x0001;
+    private static final int ACC_PRIVATE = 0x0002;
+    private static final int ACC_FINAL = 0x0010;
+    private static final int ACC_SUPER = 0x0020;
+
+    private static final int ICONST_M1 = 0x02;
+    private static final int ICONST_1 = 0x04;
+    private static final int LCONST_0 = 0x09;
+    private static final int BIPUSH = 0x10;
+    private static final int LLOAD_2 = 0x20;
+    private static final int ALOAD_0 = 0x2a;
+    private static final int ALOAD_1 = 0x2b;
+    private static final int AALOAD = 0x32;
+    private static final int LSTORE_2 = 0x41;
+    private static final int LSHL = 0x79;
+    private static final int IXOR = 0x82;
+    private static final int LOR = 0x81;
+    private static final int I2L = 0x85;
+    private static final int LCMP = 0x94;
+    private static final int IFEQ = 0x99;
+    private static final int IFNE = 0x9a;
+    private static final int IRETURN = 0xac;
+    private static final int LRETURN = 0xad;
+    private static final int RETURN = 0xb1;
+    private static final int GETFIELD = 0xb4;
+    private static final int PUTFIELD = 0xb5;
+    private static final int INVOKESPECIAL = 0xb7;
+    private static final int INVOKEINTERFACE = 0xb9;
+
+    private static final int FULL_FRAME = 255;
+    private static final int ITEM_LONG = 4;
+    private static final int ITEM_OBJECT = 7;
+
+    private RuleChainGenerator() {
+    }
+
+    /**
+     * Generates and instantiates the chain for a ruleset.
+     *
+     * @param rules   the rules, at most 64
+     * @param order   rule positions in the order to run them, with network rules last
+     * @param network bit mask of the positions of network rules
+     * @return the chain
+     * @throws IllegalStateException if the class cannot be defined
+     */
+    static RuleChain generate(List<Rule> rules, int[] order, long network) {
+        byte[] bytes = new ClassFile(rules.size(), order, network).toBytes();
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup().defineHiddenClass(bytes, true);
+            return (RuleChain) lookup.findConstructor(lookup.lookupClass(), MethodType.methodType(void.class, Rule[].class))
+                    .invoke(rules.toArray(new Rule[0]));
+        } catch (Throwable e) {
+            throw new IllegalStateException("Failed to generate rule chain", e);
+        }
+    }
+
+    /**
+     * Writes the class file of one chain.
+     */
+    private static final class ClassFile {
+        private final int size;
+        private final int[] order;
+        private final long network;
+
+        private final ByteArrayOutputStream constantBytes = new ByteArrayOutputStream();
+        private final DataOutputStream constants = new DataOutputStream(constantBytes);
+        private final Map<String, Integer> constantIndexes = new HashMap<>();
+        private int constantCount = 1;
+
+        private ClassFile(int size, int[] order, long network) {
+            this.size = size;
+            this.order = order;
+            this.network = network;
+        }
+
+        private byte[] toBytes() {
+            try {
+                int thisClass = classConstant(GENERATED);
+                int superClass = classConstant("java/lang/Object");
+                int chainClass = classConstant(CHAIN);
+                int ruleType = utf8("L" + RULE + ";");
+                int[] fieldNames = new int[size];
+                int[] fieldRefs = new int[size];
+                for (int i = 0; i < size; i++) {
+                    fieldNames[i] = utf8("rule" + i);
+                    fieldRefs[i] = memberRef(9, GENERATED, "rule" + i, "L" + RULE + ";");
+                }
+
+                byte[] init = constructor(fieldRefs);
+                byte[] failures = failuresMethod(thisClass, fieldRefs);
+                byte[] firstFailure = firstFailureMethod(thisClass, fieldRefs);
+
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                DataOutputStream data = new DataOutputStream(out);
+                data.writeInt(0xCAFEBABE);
+                data.writeShort(0);
+                data.writeShort(VERSION);
+                data.writeShort(constantCount);
+                constants.flush();
+                constantBytes.writeTo(data);
+                data.writeShort(ACC_FINAL | ACC_SUPER);
+                data.writeShort(thisClass);
+                data.writeShort(superClass);
+                data.writeShort(1);
+                data.writeShort(chainClass);
+
+                data.writeShort(size);
+                for (int i = 0; i < size; i++) {
+                    data.writeShort(ACC_PRIVATE | ACC_FINAL);
+                    data.writeShort(fieldNames[i]);
+                    data.writeShort(ruleType);
+                    data.writeShort(0);
+                }
+
+                data.writeShort(3);
+                data.write(init);
+                data.write(failures);
+                data.write(firstFailure);
+                data.writeShort(0);
+                return out.toByteArray();
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        /**
+         * {@code <init>(Rule[] rules)}: stores every rule in its field.
+         */
+        private byte[] constructor(int[] fieldRefs) throws IOException {
+            Code code = new Code();
+            code.op(ALOAD_0);
+            code.op(INVOKESPECIAL);
+            code.u2(memberRef(10, "java/lang/Object", "<init>", "()V"));
+            for (int i = 0; i < size; i++) {
+                code.op(ALOAD_0);
+                code.op(ALOAD_1);
+                code.op(BIPUSH);
+                code.op(i);
+                code.op(AALOAD);
+                code.op(PUTFIELD);
+                code.u2(fieldRefs[i]);
+            }
+            code.op(RETURN);
+            return method(0, "<init>", "([L" + RULE + ";)V", code, 3, 2, new StackMap());
+        }
+
+        /**
+         * {@code long failures(ParsedEmail email)}: ORs in {@code (validate ? 0 : 1) << position} for
+         * every rule without branching, returning before the network rules if any other rule failed.
+         */
+        private byte[] failuresMethod(int thisClass, int[] fieldRefs) throws IOException {
+            int validate = memberRef(11, RULE, "validate", "(L" + PARSED_EMAIL + ";)Z");
+            Code code = new Code();
+            StackMap frames = new StackMap();
+
+            code.op(LCONST_0);
+            code.op(LSTORE_2);
+            for (int n = 0; n < order.length; n++) {
+                int i = order[n];
+                if (n > 0 && isNetwork(i) && !isNetwork(order[n - 1])) {
+                    // if (failures != 0) return failures;
+                    code.op(LLOAD_2);
+                    code.op(LCONST_0);
+                    code.op(LCMP);
+                    int branch = code.size();
+                    code.op(IFEQ);
+                    code.u2(0);
+                    code.op(LLOAD_2);
+                    code.op(LRETURN);
+                    code.patch(branch + 1, code.size() - branch);
+                    frames.fullFrame(code.size(), thisClass, classConstant(PARSED_EMAIL), true);
+                }
+                code.op(ALOAD_0);
+                code.op(GETFIELD);
+                code.u2(fieldRefs[i]);
+                code.op(ALOAD_1);
+                code.op(INVOKEINTERFACE);
+                code.u2(validate);
+                code.op(2);
+                code.op(0);
+                code.op(ICONST_1);
+                code.op(IXOR);
+                code.op(I2L);
+                code.op(BIPUSH);
+                code.op(i);
+                code.op(LSHL);
+                code.op(LLOAD_2);
+                code.op(LOR);
+                code.op(LSTORE_2);
+            }
+            code.op(LLOAD_2);
+            code.op(LRETURN);
+            return method(ACC_PUBLIC, "failures", "(L" + PARSED_EMAIL + ";)J", code, 4, 4, frames);
+        }
+
+        /**
+         * {@code int firstFailure(ParsedEmail email)}: returns the position of the first rule that fails.
+         */
+        private byte[] firstFailureMethod(int thisClass, int[] fieldRefs) throws IOException {
+            int validate = memberRef(11, RULE, "validate", "(L" + PARSED_EMAIL + ";)Z");
+            Code code = new Code();
+            StackMap frames = new StackMap();
+
+            for (int i : order) {
+                code.op(ALOAD_0);
+                code.op(GETFIELD);
+                code.u2(fieldRefs[i]);
+                code.op(ALOAD_1);
+                code.op(INVOKEINTERFACE);
+                code.u2(validate);
+                code.op(2);
+                code.op(0);
+                int branch = code.size();
+                code.op(IFNE);
+                code.u2(0);
+                code.op(BIPUSH);
+                code.op(i);
+                code.op(IRETURN);
+                code.patch(branch + 1, code.size() - branch);
+                frames.fullFrame(code.size(), thisClass, classConstant(PARSED_EMAIL), false);
+            }
+            code.op(ICONST_M1);
+            code.op(IRETURN);
+            return method(ACC_PUBLIC, "firstFailure", "(L" + PARSED_EMAIL + ";)I", code, 2, 2, frames);
+        }
+
+        private boolean isNetwork(int position) {
+            return (network & (1L << position)) != 0;
+        }
+
+        private byte[] method(int access, String name, String descriptor, Code code, int maxStack, int maxLocals,
+                              StackMap frames) throws IOException {
+            byte[] stackMapTable = frames.count == 0 ? null : frames.toAttribute(utf8("StackMapTable"));
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            DataOutputStream data = new DataOutputStream(out);
+            data.writeShort(access);
+            data.writeShort(utf8(name));
+            data.writeShort(utf8(descriptor));
+            data.writeShort(1);
+            data.writeShort(utf8("Code"));
+            int attributes = stackMapTable == null ? 0 : stackMapTable.length;
+            data.writeInt(2 + 2 + 4 + code.size() + 2 + 2 + attributes);
+            data.writeShort(maxStack);
+            data.writeShort(maxLocals);
+            data.writeInt(code.size());
+            code.writeTo(data);
+            data.writeShort(0);
+            data.writeShort(stackMapTable == null ? 0 : 1);
+            if (stackMapTable != null) {
+                data.write(stackMapTable);
+            }
+            return out.toByteArray();
+        }
+
+        private int utf8(String value) throws IOException {
+            Integer index = constantIndexes.get("U" + value);
+            if (index != null) {
+                return index;
+            }
+            constants.writeByte(1);
+            constants.writeUTF(value);
+            return register("U" + value);
+        }
+
+        private int classConstant(String internalName) throws IOException {
+            Integer index = constantIndexes.get("C" + internalName);
+            if (index != null) {
+                return index;
+            }
+            int name = utf8(internalName);
+            constants.writeByte(7);
+            constants.writeShort(name);
+            return register("C" + internalName);
+        }
+
+        /**
+         * @param tag 9 for a field, 10 for a class method, 11 for an interface method
+         */
+        private int memberRef(int tag, String owner, String name, String descriptor) throws IOException {
+            String key = tag + owner + "." + name + descriptor;
+            Integer index = constantIndexes.get(key);
+            if (index != null) {
+                return index;
+            }
+            int ownerClass = classConstant(owner);
+            int nameAndType = nameAndType(name, descriptor);
+            constants.writeByte(tag);
+            constants.writeShort(ownerClass);
+            constants.writeShort(nameAndType);
+            return register(key);
+        }
+
+        private int nameAndType(String name, String descriptor) throws IOException {
+            Integer index = constantIndexes.get("N" + name + descriptor);
+            if (index != null) {
+                return index;
+            }
+            int nameIndex = utf8(name);
+            int descriptorIndex = utf8(descriptor);
+            constants.writeByte(12);
+            constants.writeShort(nameIndex);
+            constants.writeShort(descriptorIndex);
+            return register("N" + name + descriptor);
+        }
+
+        private int register(String key) {
+            constantIndexes.put(key, constantCount);
+            return constantCount++;
+        }
+    }
+
+    /**
+     * Stack map frames of one method, each with the method's locals and an empty stack.
+     */
+    private static final class StackMap {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final DataOutputStream out = new DataOutputStream(bytes);
+        private int count;
+        private int lastOffset = -1;
+
+        private void fullFrame(int offset, int thisClass, int parsedEmailClass, boolean withFailures)
+                throws IOException {
+            out.writeByte(FULL_FRAME);
+            out.writeShort(offset - lastOffset - 1);
+            lastOffset = offset;
+            count++;
+            out.writeShort(withFailures ? 3 : 2);
+            out.writeByte(ITEM_OBJECT);
+            out.writeShort(thisClass);
+            out.writeByte(ITEM_OBJECT);
+            out.writeShort(parsedEmailClass);
+            if (withFailures) {
+                out.writeByte(ITEM_LONG);
+            }
+            out.writeShort(0);
+        }
+
+        private byte[] toAttribute(int nameIndex) throws IOException {
+            ByteArrayOutputStream attribute = new ByteArrayOutputStream();
+            DataOutputStream data = new DataOutputStream(attribute);
+            data.writeShort(nameIndex);
+            data.writeInt(2 + bytes.size());
+            data.writeShort(count);
+            bytes.writeTo(data);
+            return attribute.toByteArray();
+        }
+    }
+
+    /**
+     * Growable bytecode buffer.
+     */
+    private static final class Code {
+        private byte[] bytes = new byte[256];
+        private int size;
+
+        private void op(int value) {
+            if (size == bytes.length) {
+                bytes = Arrays.copyOf(bytes, size * 2);
+            }
+            bytes[size++] = (byte) value;
+        }
+
+        private void u2(int value) {
+            op(value >>> 8);
+            op(value);
+        }
+
+        private void patch(int offset, int value) {
+            bytes[offset] = (byte) (value >>> 8);
+            bytes[offset + 1] = (byte) value;
+        }
+
+        private int size() {
+            return size;
+        }
+
+        private void writeTo(DataOutputStream out) throws IOException {
+            out.write(bytes, 0, size);
+        }
+    }
+}
@@ -4,6 +4,7 @@ import lombok.Builder;
 import lombok.Getter;
 import lombok.Singular;
 
+import java.time.Duration;
 import java.util.List;
 
 /**
@@ -15,6 +16,35 @@ public class Ruleset {
     @Singular
     private final List<Rule> rules;
 
+    /**
+     * Maximum number of domains for which compiled rulesets memoize the verdicts of
+     * {@linkplain Rule#isDomainScoped() domain-scoped} rules other than network rules; 0, the default,
+     * disables the memo.
+     */
+    @Builder.Default
+    private final int domainVerdictCacheSize = 0;
+
+    /**
+     * How long memoized domain verdicts are reused, 10 minutes by default.
+     */
+    @Builder.Default
+    private final Duration domainVerdictTtl = Duration.ofMinutes(10);
+
+    /**
+     * Whether compiled rulesets learn the quick-fail rule order from the traffic, off by default.
+     * Quick-fail validation then reports whichever failing rule the learned order reaches first.
+     */
+    @Builder.Default
+    private final boolean adaptiveOrdering = false;
+
+    /**
+     * Whether compiled rulesets generate a class that calls every rule from its own call site, off by default.
+     * A loop over mixed rule types keeps the JIT from inlining any of them; unrolled calls can be inlined.
+     * Fused rulesets, and rulesets with a domain verdict cache or adaptive ordering, are not generated.
+     */
+    @Builder.Default
+    private final boolean inlineRules = false;
+
     /**
      * Validates an email against all rules in this ruleset.
      *
@@ -22,6 +52,24 @@ public class Ruleset {
      * @return true if the email passes all rules, false otherwise
      */
     public boolean validate(String email) {
+        if (email == null) {
+            for (Rule rule : rules) {
+                if (!rule.validate((String) null)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return validate(ParsedEmail.parse(email));
+    }
+
+    /**
+     * Validates an already parsed email against all rules in this ruleset.
+     *
+     * @param email the parsed email address to validate
+     * @return true if the email passes all rules, false otherwise
+     */
+    public boolean validate(ParsedEmail email) {
         for (Rule rule : rules) {
             if (!rule.validate(email)) {
                 return false;
@@ -29,4 +77,15 @@ public class Ruleset {
         }
         return true;
     }
+
+    /**
+     * Prepares this ruleset for repeated validation.
+     * Rulesets made only of the built-in syntactic rules ({@code SyntaxRule}, {@code LengthRule},
+     * {@code LocalPartRule}, {@code DomainRule}, {@code TldRule}) are fused into a single pass.
+     *
+     * @return the compiled ruleset
+     */
+    public CompiledRuleset compile() {
+        return new CompiledRuleset(this);
+    }
 }
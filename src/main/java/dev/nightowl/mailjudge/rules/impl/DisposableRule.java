@@ -1,30 +1,77 @@
 package dev.nightowl.mailjudge.rules.impl;
 
+import dev.nightowl.mailjudge.rules.CostTier;
+import dev.nightowl.mailjudge.rules.ErrorCode;
+import dev.nightowl.mailjudge.rules.ParsedEmail;
 import dev.nightowl.mailjudge.rules.Rule;
 import dev.nightowl.mailjudge.util.DisposableEmailProvider;
+import dev.nightowl.mailjudge.util.DisposableListRefresher;
+import dev.nightowl.mailjudge.util.DomainIndex;
 
 import java.util.Set;
+import java.util.function.Supplier;
 
 /**
  * Checks against disposable email providers.
+ * The domain is looked up straight from the email's characters in a compact {@link DomainIndex},
+ * without extracting or lowercasing it.
+ * <p>
+ * By default subdomains of a listed domain are rejected too, so {@code x.mailinator.com} fails
+ * when {@code mailinator.com} is listed. Pass {@code matchSubdomains = false} for exact matching only.
  */
 public class DisposableRule implements Rule {
-    private final Set<String> disposableDomains;
+    private final Supplier<DomainIndex> disposableDomains;
+    private final boolean matchSubdomains;
 
     /**
      * Creates a new DisposableRule with GitHub-sourced domains.
+     * All such rules share one index and see every refresh of it.
      */
     public DisposableRule() {
-        this.disposableDomains = DisposableEmailProvider.getDisposableDomains();
+        this(DisposableEmailProvider.getRefresher());
+    }
+
+    /**
+     * Creates a new DisposableRule that always checks the latest list of a refresher.
+     *
+     * @param refresher source of the domains to block
+     */
+    public DisposableRule(DisposableListRefresher refresher) {
+        this(refresher::getIndex, true);
     }
 
     /**
      * Creates a new DisposableRule with custom disposable domains.
+     * The domains are copied into an index when the rule is created.
      * 
      * @param customDisposableDomains set of domains to block
      */
     public DisposableRule(Set<String> customDisposableDomains) {
-        this.disposableDomains = customDisposableDomains;
+        this(DomainIndex.of(customDisposableDomains));
+    }
+
+    /**
+     * Creates a new DisposableRule backed by an existing index.
+     *
+     * @param disposableDomains index of domains to block
+     */
+    public DisposableRule(DomainIndex disposableDomains) {
+        this(disposableDomains, true);
+    }
+
+    /**
+     * Creates a new DisposableRule backed by an existing index.
+     *
+     * @param disposableDomains index of domains to block
+     * @param matchSubdomains   whether subdomains of a listed domain are blocked as well
+     */
+    public DisposableRule(DomainIndex disposableDomains, boolean matchSubdomains) {
+        this(() -> disposableDomains, matchSubdomains);
+    }
+
+    private DisposableRule(Supplier<DomainIndex> disposableDomains, boolean matchSubdomains) {
+        this.disposableDomains = disposableDomains;
+        this.matchSubdomains = matchSubdomains;
     }
 
     @Override
@@ -32,14 +79,35 @@ public class DisposableRule implements Rule {
         if (email == null || email.isEmpty()) {
             return false;
         }
+        return validate(ParsedEmail.parse(email));
+    }
 
-        int atIndex = email.indexOf('@');
-        if (atIndex == -1) {
+    @Override
+    public boolean validate(ParsedEmail email) {
+        if (!email.hasAt()) {
             return false;
         }
 
-        String domain = email.substring(atIndex + 1).toLowerCase();
-        return !disposableDomains.contains(domain);
+        DomainIndex index = disposableDomains.get();
+        if (matchSubdomains) {
+            return !index.containsOrParent(email.getSequence(), email.getDomainStart(), email.length());
+        }
+        return !index.contains(email.getSequence(), email.getDomainStart(), email.length());
+    }
+
+    @Override
+    public boolean isDomainScoped() {
+        return true;
+    }
+
+    @Override
+    public CostTier getCostTier() {
+        return CostTier.MEMORY;
+    }
+
+    @Override
+    public ErrorCode getErrorCode() {
+        return ErrorCode.DISPOSABLE;
     }
 
     @Override
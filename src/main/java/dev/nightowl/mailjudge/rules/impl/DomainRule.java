@@ -1,5 +1,7 @@
 package dev.nightowl.mailjudge.rules.impl;
 
+import dev.nightowl.mailjudge.rules.ErrorCode;
+import dev.nightowl.mailjudge.rules.ParsedEmail;
 import dev.nightowl.mailjudge.rules.Rule;
 
 /**
@@ -13,29 +15,33 @@ public class DomainRule implements Rule {
         if (email == null || email.isEmpty()) {
             return false;
         }
+        return validate(ParsedEmail.parse(email));
+    }
 
-        int atIndex = email.indexOf('@');
-        if (atIndex == -1 || atIndex == email.length() - 1) {
+    @Override
+    public boolean validate(ParsedEmail email) {
+        int atIndex = email.getAtIndex();
+        int length = email.length();
+        if (atIndex == -1 || atIndex == length - 1) {
             return false;
         }
 
-        String domain = email.substring(atIndex + 1);
-
-        int dotIndex = domain.indexOf('.');
-        if (dotIndex == -1) {
+        if (email.getFirstDomainDotIndex() == -1) {
             return false;
         }
 
-        if (domain.charAt(0) == '.' || domain.charAt(0) == '-' ||
-            domain.charAt(domain.length() - 1) == '.' || domain.charAt(domain.length() - 1) == '-') {
+        int start = atIndex + 1;
+        char first = email.charAt(start);
+        char last = email.charAt(length - 1);
+        if (first == '.' || first == '-' || last == '.' || last == '-') {
             return false;
         }
 
         boolean previousWasDot = false;
         char previousChar = '\0';
         
-        for (int i = 0; i < domain.length(); i++) {
-            char c = domain.charAt(i);
+        for (int i = start; i < length; i++) {
+            char c = email.charAt(i);
 
             if (c == '.') {
                 if (previousChar == '-') {
@@ -69,6 +75,16 @@ public class DomainRule implements Rule {
                c == '.' || c == '-';
     }
 
+    @Override
+    public boolean isDomainScoped() {
+        return true;
+    }
+
+    @Override
+    public ErrorCode getErrorCode() {
+        return ErrorCode.DOMAIN;
+    }
+
     @Override
     public String getErrorMessage() {
         return "Invalid domain format";
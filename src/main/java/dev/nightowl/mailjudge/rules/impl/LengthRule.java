@@ -1,7 +1,10 @@
 package dev.nightowl.mailjudge.rules.impl;
 
+import dev.nightowl.mailjudge.rules.ErrorCode;
+import dev.nightowl.mailjudge.rules.ParsedEmail;
 import dev.nightowl.mailjudge.rules.Rule;
 import lombok.AllArgsConstructor;
+import lombok.Getter;
 
 /**
  * Validates email length according to RFC 5321.
@@ -9,6 +12,7 @@ import lombok.AllArgsConstructor;
  * Maximum domain: 255 characters
  * Maximum total: 320 characters
  */
+@Getter
 @AllArgsConstructor
 public class LengthRule implements Rule {
     private final int maxLength;
@@ -27,21 +31,26 @@ public class LengthRule implements Rule {
         if (email == null || email.isEmpty()) {
             return false;
         }
+        return validate(ParsedEmail.parse(email));
+    }
 
+    @Override
+    public boolean validate(ParsedEmail email) {
         if (email.length() > maxLength) {
             return false;
         }
 
-        int atIndex = email.indexOf('@');
-        if (atIndex == -1) {
+        if (!email.hasAt()) {
             return false;
         }
 
-        String localPart = email.substring(0, atIndex);
-        String domain = email.substring(atIndex + 1);
+        return email.getLocalLength() <= maxLocalLength &&
+               email.getDomainLength() <= maxDomainLength;
+    }
 
-        return localPart.length() <= maxLocalLength && 
-               domain.length() <= maxDomainLength;
+    @Override
+    public ErrorCode getErrorCode() {
+        return ErrorCode.LENGTH;
     }
 
     @Override
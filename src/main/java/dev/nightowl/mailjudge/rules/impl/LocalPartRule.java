@@ -1,5 +1,7 @@
 package dev.nightowl.mailjudge.rules.impl;
 
+import dev.nightowl.mailjudge.rules.ErrorCode;
+import dev.nightowl.mailjudge.rules.ParsedEmail;
 import dev.nightowl.mailjudge.rules.Rule;
 
 /**
@@ -13,21 +15,23 @@ public class LocalPartRule implements Rule {
         if (email == null || email.isEmpty()) {
             return false;
         }
+        return validate(ParsedEmail.parse(email));
+    }
 
-        int atIndex = email.indexOf('@');
+    @Override
+    public boolean validate(ParsedEmail email) {
+        int atIndex = email.getAtIndex();
         if (atIndex <= 0) {
             return false;
         }
 
-        String localPart = email.substring(0, atIndex);
-
-        if (localPart.charAt(0) == '.' || localPart.charAt(localPart.length() - 1) == '.') {
+        if (email.charAt(0) == '.' || email.charAt(atIndex - 1) == '.') {
             return false;
         }
 
         boolean previousWasDot = false;
-        for (int i = 0; i < localPart.length(); i++) {
-            char c = localPart.charAt(i);
+        for (int i = 0; i < atIndex; i++) {
+            char c = email.charAt(i);
 
             if (c == '.') {
                 if (previousWasDot) {
@@ -53,6 +57,11 @@ public class LocalPartRule implements Rule {
                c == '.' || c == '-' || c == '_' || c == '+';
     }
 
+    @Override
+    public ErrorCode getErrorCode() {
+        return ErrorCode.LOCAL_PART;
+    }
+
     @Override
     public String getErrorMessage() {
         return "Invalid local part format";
@@ -1,36 +1,282 @@
 package dev.nightowl.mailjudge.rules.impl;
 
-import dev.nightowl.mailjudge.rules.Rule;
+import dev.nightowl.mailjudge.dns.DnsjavaMxResolver;
+import dev.nightowl.mailjudge.dns.LimitedMxResolver;
+import dev.nightowl.mailjudge.dns.MxCache;
+import dev.nightowl.mailjudge.dns.MxRecords;
+import dev.nightowl.mailjudge.dns.MxResolver;
+import dev.nightowl.mailjudge.rules.AsyncRule;
+import dev.nightowl.mailjudge.rules.ErrorCode;
+import dev.nightowl.mailjudge.rules.ParsedEmail;
+import lombok.Getter;
 import lombok.extern.java.Log;
-import org.xbill.DNS.Lookup;
-import org.xbill.DNS.Record;
-import org.xbill.DNS.Type;
+import org.xbill.DNS.Resolver;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Validates that the domain has valid MX records.
  * This performs an actual DNS lookup and may be slower.
+ * Lookups go through an {@link MxResolver}, by default dnsjava's asynchronous resolver, so
+ * {@link #validateAsync(ParsedEmail)} does not hold a thread while the query is in flight.
+ * Verdicts are kept in an {@link MxCache} for the TTL of the records, so repeated domains
+ * are answered without a lookup. Concurrent lookups for the same domain are coalesced:
+ * the first caller sends the query and everyone else waits on its result. Once every caller has
+ * cancelled or timed out its future, the query is cancelled too.
+ * <p>
+ * A lookup that fails, such as a DNS timeout or a query rejected by a {@link LimitedMxResolver}, gives no
+ * verdict and is not cached. {@link #validateAsync(ParsedEmail)} completes exceptionally, so
+ * {@link dev.nightowl.mailjudge.MailJudge} reports the address as inconclusive rather than as having no
+ * MX records. {@link #validate(ParsedEmail)} can only answer true or false, and answers false.
  */
 @Log
-public class MxRecordRule implements Rule {
+public class MxRecordRule implements AsyncRule {
+    @Getter
+    private final MxResolver resolver;
+    @Getter
+    private final MxCache cache;
+    private final ConcurrentHashMap<String, Lookup> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a new MxRecordRule using the system's DNS resolver, through the
+     * {@linkplain LimitedMxResolver#getDefault() shared limiter}, and the shared default cache.
+     */
+    public MxRecordRule() {
+        this(LimitedMxResolver.getDefault(), MxCache.getDefault());
+    }
+
+    /**
+     * Creates a new MxRecordRule that sends its queries to the given resolver, with its own cache.
+     *
+     * @param resolver the resolver to query
+     */
+    public MxRecordRule(Resolver resolver) {
+        this(resolver, new MxCache());
+    }
+
+    /**
+     * Creates a new MxRecordRule that sends its queries to the given resolver and caches verdicts in the given cache.
+     *
+     * @param resolver the resolver to query
+     * @param cache    the cache for MX verdicts
+     */
+    public MxRecordRule(Resolver resolver, MxCache cache) {
+        this(new DnsjavaMxResolver(resolver), cache);
+    }
+
+    /**
+     * Creates a new MxRecordRule that looks domains up through the given resolver, with its own cache.
+     * Use a {@link dev.nightowl.mailjudge.dns.HedgedMxResolver} to spread queries over several servers.
+     *
+     * @param resolver the resolver to look up MX records with
+     */
+    public MxRecordRule(MxResolver resolver) {
+        this(resolver, new MxCache());
+    }
+
+    /**
+     * Creates a new MxRecordRule that looks domains up through the given resolver and caches verdicts
+     * in the given cache.
+     *
+     * @param resolver the resolver to look up MX records with
+     * @param cache    the cache for MX verdicts
+     */
+    public MxRecordRule(MxResolver resolver, MxCache cache) {
+        this.resolver = resolver;
+        this.cache = cache;
+    }
 
     @Override
     public boolean validate(String email) {
-
-        int atIndex = email.indexOf('@');
-        if (atIndex == -1) {
+        if (email == null || email.isEmpty()) {
             return false;
         }
+        return validate(ParsedEmail.parse(email));
+    }
 
-        String domain = email.substring(atIndex + 1);
+    /**
+     * {@inheritDoc}
+     * A failed lookup counts as a failure here; use {@link #validateAsync(ParsedEmail)} to tell the two apart.
+     */
+    @Override
+    public boolean validate(ParsedEmail email) {
+        if (!email.hasAt() || email.getDomainLength() == 0) {
+            return false;
+        }
 
+        String domain = email.getNormalizedDomain();
+        Boolean cached = cache.get(domain);
+        if (cached != null) {
+            return cached;
+        }
         try {
-            Lookup lookup = new Lookup(domain, Type.MX);
-            Record[] records = lookup.run();
-            return records != null && records.length > 0;
-        } catch (Exception e) {
-            log.fine("MX lookup failed for domain: " + domain + " - " + e.getMessage());
+            return lookupShared(domain).join();
+        } catch (CompletionException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public CompletableFuture<Boolean> validateAsync(ParsedEmail email) {
+        if (!email.hasAt() || email.getDomainLength() == 0) {
+            return CompletableFuture.completedFuture(false);
+        }
+
+        String domain = email.getNormalizedDomain();
+        Boolean cached = cache.get(domain);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        return lookupShared(domain);
+    }
+
+    /**
+     * {@inheritDoc}
+     * The returned future times out with the budget even if the caller does not cancel it, and a lookup
+     * no caller waits for any more is cancelled.
+     */
+    @Override
+    public CompletableFuture<Boolean> validateAsync(ParsedEmail email, Duration remaining) {
+        return validateAsync(email).orTimeout(remaining.toNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Joins the in-flight lookup for a domain, starting one if there is none.
+     * Every caller gets a future of its own, so completing or cancelling it cannot affect the other waiters.
+     * The verdict is cached before the lookup leaves the in-flight map. A lookup may still finish
+     * between a caller's cache check and its in-flight check, so the cache is checked again
+     * before a new query is sent.
+     */
+    private CompletableFuture<Boolean> lookupShared(String domain) {
+        while (true) {
+            Lookup pending = inFlight.get(domain);
+            if (pending == null) {
+                Lookup created = new Lookup(domain);
+                pending = inFlight.putIfAbsent(domain, created);
+                if (pending == null) {
+                    Boolean cached = cache.peek(domain);
+                    if (cached != null) {
+                        inFlight.remove(domain, created);
+                        created.result.complete(cached);
+                        return CompletableFuture.completedFuture(cached);
+                    }
+                    CompletableFuture<Boolean> waiter = created.waiter();
+                    created.start();
+                    return waiter;
+                }
+            }
+            CompletableFuture<Boolean> waiter = pending.join();
+            if (waiter != null) {
+                return waiter;
+            }
+            // Its last waiter left before we joined, so it is being cancelled
+            inFlight.remove(domain, pending);
+        }
+    }
+
+    /**
+     * A query shared by everyone validating the same domain. The query is cancelled once no caller
+     * waits for it any more, freeing its slot in a {@link LimitedMxResolver}.
+     */
+    private final class Lookup {
+        private final String domain;
+        private final CompletableFuture<Boolean> result = new CompletableFuture<>();
+        private CompletableFuture<MxRecords> query;
+        // Starts with the caller that created it
+        private int waiters = 1;
+        private boolean abandoned;
+
+        private Lookup(String domain) {
+            this.domain = domain;
+        }
+
+        /**
+         * @return a future of the result for one more waiter, or null if the lookup was abandoned
+         */
+        private synchronized CompletableFuture<Boolean> join() {
+            if (abandoned) {
+                return null;
+            }
+            waiters++;
+            return waiter();
+        }
+
+        private CompletableFuture<Boolean> waiter() {
+            CompletableFuture<Boolean> waiter = result.copy();
+            waiter.whenComplete((hasMx, error) -> leave());
+            return waiter;
+        }
+
+        private void leave() {
+            CompletableFuture<MxRecords> cancelled;
+            synchronized (this) {
+                if (--waiters > 0 || result.isDone()) {
+                    return;
+                }
+                abandoned = true;
+                cancelled = query;
+            }
+            inFlight.remove(domain, this);
+            if (cancelled != null) {
+                cancelled.cancel(false);
+            }
+            result.cancel(false);
+        }
+
+        private void start() {
+            CompletableFuture<MxRecords> sent;
+            try {
+                sent = resolver.lookupMx(domain);
+            } catch (RuntimeException e) {
+                sent = CompletableFuture.failedFuture(e);
+            }
+            boolean cancel;
+            synchronized (this) {
+                query = sent;
+                cancel = abandoned;
+            }
+            if (cancel) {
+                sent.cancel(false);
+            }
+            sent.handle((records, error) -> verdict(domain, records, error)).whenComplete((hasMx, error) -> {
+                inFlight.remove(domain, this);
+                if (error != null) {
+                    result.completeExceptionally(error);
+                } else {
+                    result.complete(hasMx);
+                }
+            });
+        }
+    }
+
+    private Boolean verdict(String domain, MxRecords records, Throwable error) {
+        if (error != null) {
+            // Timeouts, server failures and rejections are transient, so they are not cached
+            Throwable cause = error instanceof CompletionException && error.getCause() != null
+                    ? error.getCause() : error;
+            log.fine("MX lookup failed for domain: " + domain + " - " + cause.getMessage());
+            throw new CompletionException(cause);
+        }
+        if (records.isEmpty()) {
+            cache.putNegative(domain);
             return false;
         }
+        cache.putPositive(domain, records.ttl());
+        return true;
+    }
+
+    @Override
+    public boolean isDomainScoped() {
+        return true;
+    }
+
+    @Override
+    public ErrorCode getErrorCode() {
+        return ErrorCode.NO_MX;
     }
 
     @Override
@@ -1,5 +1,7 @@
 package dev.nightowl.mailjudge.rules.impl;
 
+import dev.nightowl.mailjudge.rules.ErrorCode;
+import dev.nightowl.mailjudge.rules.ParsedEmail;
 import dev.nightowl.mailjudge.rules.Rule;
 
 /**
@@ -13,10 +15,14 @@ public class SyntaxRule implements Rule {
         if (email == null || email.isEmpty()) {
             return false;
         }
+        return validate(ParsedEmail.parse(email));
+    }
 
-        int atIndex = email.indexOf('@');
+    @Override
+    public boolean validate(ParsedEmail email) {
+        int atIndex = email.getAtIndex();
         
-        if (atIndex == -1 || atIndex != email.lastIndexOf('@')) {
+        if (atIndex == -1 || atIndex != email.getLastAtIndex()) {
             return false;
         }
 
@@ -31,6 +37,11 @@ public class SyntaxRule implements Rule {
         return true;
     }
 
+    @Override
+    public ErrorCode getErrorCode() {
+        return ErrorCode.SYNTAX;
+    }
+
     @Override
     public String getErrorMessage() {
         return "Invalid email syntax";
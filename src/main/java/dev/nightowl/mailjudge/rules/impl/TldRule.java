@@ -1,11 +1,15 @@
 package dev.nightowl.mailjudge.rules.impl;
 
+import dev.nightowl.mailjudge.rules.ErrorCode;
+import dev.nightowl.mailjudge.rules.ParsedEmail;
 import dev.nightowl.mailjudge.rules.Rule;
+import lombok.Getter;
 
 /**
  * Validates the top-level domain (TLD).
  * Ensures TLD is at least 2 characters and contains only letters.
  */
+@Getter
 public class TldRule implements Rule {
     private final int minTldLength;
 
@@ -30,28 +34,29 @@ public class TldRule implements Rule {
         if (email == null || email.isEmpty()) {
             return false;
         }
+        return validate(ParsedEmail.parse(email));
+    }
 
-        int atIndex = email.indexOf('@');
-        if (atIndex == -1) {
+    @Override
+    public boolean validate(ParsedEmail email) {
+        if (!email.hasAt()) {
             return false;
         }
 
-        String domain = email.substring(atIndex + 1);
-        int lastDotIndex = domain.lastIndexOf('.');
+        int lastDotIndex = email.getLastDotIndex();
+        int length = email.length();
         
-        if (lastDotIndex == -1 || lastDotIndex == domain.length() - 1) {
+        if (lastDotIndex == -1 || lastDotIndex == length - 1) {
             return false;
         }
 
-        String tld = domain.substring(lastDotIndex + 1);
-
-        if (tld.length() < minTldLength) {
+        if (length - lastDotIndex - 1 < minTldLength) {
             return false;
         }
 
         // TLD must contain only letters
-        for (int i = 0; i < tld.length(); i++) {
-            char c = tld.charAt(i);
+        for (int i = lastDotIndex + 1; i < length; i++) {
+            char c = email.charAt(i);
             if (!((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z'))) {
                 return false;
             }
@@ -60,6 +65,16 @@ public class TldRule implements Rule {
         return true;
     }
 
+    @Override
+    public boolean isDomainScoped() {
+        return true;
+    }
+
+    @Override
+    public ErrorCode getErrorCode() {
+        return ErrorCode.TLD;
+    }
+
     @Override
     public String getErrorMessage() {
         return "Invalid top-level domain";
@@ -0,0 +1,378 @@
+package dev.nightowl.mailjudge.util;
+
+import lombok.Getter;
+import lombok.extern.java.Log;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Keeps a disposable domain list up to date without blocking readers.
+ * <p>
+ * The current {@link DomainIndex} sits in an atomic reference. A refresh downloads and indexes the new
+ * list off to the side and publishes it with a single swap, so lookups never wait for the network.
+ * Downloads are conditional ({@code If-None-Match} / {@code If-Modified-Since}); an unchanged list costs
+ * one {@code 304 Not Modified} response. Refreshes can run on a schedule in a background daemon thread.
+ * <p>
+ * Next to the plain-text copy of the list, a binary {@link DomainIndex} snapshot is kept.
+ * On startup the snapshot is memory-mapped and queried in place, so nothing is parsed.
+ * Without any local copy, a fallback index (such as one embedded in the jar) is served right away
+ * while the list is downloaded in the background. Background work of all refreshers runs on one
+ * shared daemon thread.
+ */
+@Log
+public class DisposableListRefresher implements AutoCloseable {
+    private static final String CACHE_FILE = "disposable-domains.txt";
+    private static final String SNAPSHOT_FILE = "disposable-domains.idx";
+    private static final int TIMEOUT_MILLIS = 10000;
+    private static final ScheduledExecutorService SCHEDULER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "mailjudge-disposable-refresh");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * The URL the list is downloaded from, or null if it is never downloaded.
+     */
+    @Getter
+    private final String url;
+
+    /**
+     * Directory holding the local copy of the list.
+     */
+    @Getter
+    private final Path cacheDir;
+
+    private final Duration cacheDuration;
+
+    /**
+     * Index served when there is no local copy, or null if there is none.
+     */
+    @Getter
+    private final DomainIndex fallback;
+
+    private final AtomicReference<DomainIndex> current = new AtomicReference<>();
+    private final ReentrantLock loadLock = new ReentrantLock();
+    private final ReentrantLock refreshLock = new ReentrantLock();
+    private final AtomicLong completedRefreshes = new AtomicLong();
+
+    private volatile String etag;
+    private volatile String lastModified;
+    private ScheduledFuture<?> schedule;
+    private Future<?> backgroundRefresh;
+
+    /**
+     * Creates a refresher for the given list.
+     *
+     * @param url           URL of the list, one domain per line
+     * @param cacheDir      directory to keep the local copy in
+     * @param cacheDuration how long the local copy is used without asking the server
+     */
+    public DisposableListRefresher(String url, Path cacheDir, Duration cacheDuration) {
+        this(url, cacheDir, cacheDuration, null);
+    }
+
+    /**
+     * Creates a refresher for the given list, starting from a fallback index when there is no local copy.
+     *
+     * @param url           URL of the list, one domain per line, or null to never download it
+     * @param cacheDir      directory to keep the local copy in
+     * @param cacheDuration how long the local copy is used without asking the server
+     * @param fallback      index to serve until a list has been downloaded, or null to download on first use
+     */
+    public DisposableListRefresher(String url, Path cacheDir, Duration cacheDuration, DomainIndex fallback) {
+        this.url = url;
+        this.cacheDir = cacheDir;
+        this.cacheDuration = cacheDuration;
+        this.fallback = fallback;
+    }
+
+    /**
+     * Gets the current index. The first call loads it from the local copy, or downloads it if
+     * there is none; later calls only read the atomic reference.
+     * A stale local copy is served while a background refresh fetches the new list.
+     *
+     * @return the current index
+     */
+    public DomainIndex getIndex() {
+        DomainIndex index = current.get();
+        if (index != null) {
+            return index;
+        }
+
+        loadLock.lock();
+        try {
+            // Double-check after acquiring the lock
+            if (current.get() == null) {
+                // A background refresh started by load() may already have published a newer index
+                current.compareAndSet(null, load());
+            }
+            return current.get();
+        } finally {
+            loadLock.unlock();
+        }
+    }
+
+    /**
+     * Downloads the list if it changed on the server and swaps in the new index.
+     * Readers keep using the previous index until the swap. If another refresh is already running,
+     * this one waits for it and returns false instead of downloading again.
+     *
+     * @return true if a new list was published, false if it was unchanged or published by another refresh
+     * @throws IOException           if the download fails
+     * @throws IllegalStateException if this refresher has no URL
+     */
+    public boolean refresh() throws IOException {
+        if (url == null) {
+            throw new IllegalStateException("No URL to refresh the disposable domains from");
+        }
+        long seen = completedRefreshes.get();
+        refreshLock.lock();
+        try {
+            if (completedRefreshes.get() != seen) {
+                return false;
+            }
+            Set<String> domains = fetch();
+            completedRefreshes.incrementAndGet();
+            if (domains == null) {
+                touchCacheFile();
+                return false;
+            }
+            DomainIndex index = DomainIndex.of(domains);
+            current.set(index);
+            saveToCacheFile(domains, index);
+            return true;
+        } finally {
+            refreshLock.unlock();
+        }
+    }
+
+    /**
+     * Starts refreshing the list in a background daemon thread.
+     * Calling it again replaces the previous schedule.
+     *
+     * @param interval time between the end of one refresh and the start of the next
+     */
+    public synchronized void start(Duration interval) {
+        stop();
+        long millis = interval.toMillis();
+        schedule = SCHEDULER.scheduleWithFixedDelay(this::refreshQuietly, millis, millis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops background refreshing. The current index stays available.
+     */
+    public synchronized void stop() {
+        if (schedule != null) {
+            schedule.cancel(true);
+            schedule = null;
+        }
+        if (backgroundRefresh != null) {
+            backgroundRefresh.cancel(true);
+            backgroundRefresh = null;
+        }
+    }
+
+    /**
+     * Stops background refreshing and waits for a refresh in progress to finish writing the local copy.
+     */
+    @Override
+    public void close() {
+        stop();
+        refreshLock.lock();
+        refreshLock.unlock();
+    }
+
+    private synchronized void refreshInBackground() {
+        backgroundRefresh = SCHEDULER.submit(this::refreshQuietly);
+    }
+
+    private void refreshQuietly() {
+        try {
+            refresh();
+        } catch (Exception e) {
+            log.warning("Failed to refresh disposable domains: " + e.getMessage());
+        }
+    }
+
+    private DomainIndex load() {
+        DomainIndex index = loadSnapshot();
+        Path cacheFilePath = getCacheFilePath();
+        if (index == null && Files.exists(cacheFilePath)) {
+            try {
+                index = DomainIndex.of(loadFromCacheFile(cacheFilePath));
+            } catch (IOException e) {
+                log.warning("Failed to read cache file: " + e.getMessage());
+            }
+        }
+
+        if (index != null) {
+            if (isFresh(cacheFilePath) || url == null) {
+                log.fine("Loading disposable domains from cache");
+            } else {
+                log.fine("Cache expired, refreshing in the background");
+                refreshInBackground();
+            }
+            return index;
+        }
+
+        if (fallback != null) {
+            if (url != null) {
+                refreshInBackground();
+            }
+            return fallback;
+        }
+        if (url == null) {
+            return DomainIndex.of(DisposableEmailProvider.getDefaultDomains());
+        }
+
+        try {
+            Set<String> domains = fetch();
+            if (domains != null) {
+                index = DomainIndex.of(domains);
+                saveToCacheFile(domains, index);
+                return index;
+            }
+        } catch (Exception e) {
+            log.warning("Failed to fetch disposable domains: " + e.getMessage());
+        }
+        return DomainIndex.of(DisposableEmailProvider.getDefaultDomains());
+    }
+
+    /**
+     * @return the mapped snapshot, or null if there is none or it is older than the text copy
+     */
+    private DomainIndex loadSnapshot() {
+        Path snapshotPath = getSnapshotPath();
+        Path cacheFilePath = getCacheFilePath();
+        try {
+            if (!Files.exists(snapshotPath) || (Files.exists(cacheFilePath) && Files.getLastModifiedTime(snapshotPath)
+                    .compareTo(Files.getLastModifiedTime(cacheFilePath)) < 0)) {
+                return null;
+            }
+            return DomainIndex.load(snapshotPath);
+        } catch (IOException e) {
+            log.warning("Failed to load snapshot: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private boolean isFresh(Path cacheFilePath) {
+        Path path = Files.exists(cacheFilePath) ? cacheFilePath : getSnapshotPath();
+        try {
+            Instant modified = Files.getLastModifiedTime(path).toInstant();
+            return Duration.between(modified, Instant.now()).compareTo(cacheDuration) < 0;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * @return the downloaded domains, or null if the list has not changed since the last download
+     */
+    private Set<String> fetch() throws IOException {
+        log.fine("Fetching disposable domains from " + url);
+
+        HttpURLConnection conn = (HttpURLConnection) new URL(url).openConnection();
+        conn.setConnectTimeout(TIMEOUT_MILLIS);
+        conn.setReadTimeout(TIMEOUT_MILLIS);
+        conn.setRequestProperty("User-Agent", "MailJudge/1.0");
+        if (etag != null) {
+            conn.setRequestProperty("If-None-Match", etag);
+        }
+        if (lastModified != null) {
+            conn.setRequestProperty("If-Modified-Since", lastModified);
+        } else if (etag == null && Files.exists(getCacheFilePath())) {
+            // Nothing downloaded yet in this process: the local copy is as new as its file
+            conn.setIfModifiedSince(Files.getLastModifiedTime(getCacheFilePath()).toMillis());
+        }
+
+        try {
+            if (conn.getResponseCode() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                log.fine("Disposable domains not modified");
+                return null;
+            }
+
+            Set<String> domains = new HashSet<>();
+            try (BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(conn.getInputStream(), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    line = line.trim().toLowerCase();
+                    if (!line.isEmpty() && !line.startsWith("#")) {
+                        domains.add(line);
+                    }
+                }
+            }
+            etag = conn.getHeaderField("ETag");
+            lastModified = conn.getHeaderField("Last-Modified");
+
+            log.info("Fetched " + domains.size() + " disposable domains");
+            return domains;
+        } finally {
+            conn.disconnect();
+        }
+    }
+
+    private static Set<String> loadFromCacheFile(Path path) throws IOException {
+        Set<String> domains = new HashSet<>();
+        for (String line : Files.readAllLines(path, StandardCharsets.UTF_8)) {
+            line = line.trim().toLowerCase();
+            if (!line.isEmpty() && !line.startsWith("#")) {
+                domains.add(line);
+            }
+        }
+        return domains;
+    }
+
+    private void saveToCacheFile(Set<String> domains, DomainIndex index) {
+        try {
+            Files.createDirectories(cacheDir);
+            Files.write(getCacheFilePath(), domains, StandardCharsets.UTF_8);
+            index.writeTo(getSnapshotPath());
+            log.fine("Saved " + domains.size() + " domains to cache");
+        } catch (IOException e) {
+            log.warning("Failed to save cache file: " + e.getMessage());
+        }
+    }
+
+    private void touchCacheFile() {
+        try {
+            FileTime now = FileTime.from(Instant.now());
+            for (Path path : new Path[]{getCacheFilePath(), getSnapshotPath()}) {
+                if (Files.exists(path)) {
+                    Files.setLastModifiedTime(path, now);
+                }
+            }
+        } catch (IOException e) {
+            log.warning("Failed to update cache file: " + e.getMessage());
+        }
+    }
+
+    private Path getCacheFilePath() {
+        return cacheDir.resolve(CACHE_FILE);
+    }
+
+    private Path getSnapshotPath() {
+        return cacheDir.resolve(SNAPSHOT_FILE);
+    }
+}
@@ -0,0 +1,404 @@
+package dev.nightowl.mailjudge.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+
+/**
+ * Immutable, compact set of lowercased domain names.
+ * <p>
+ * All domains live in a single buffer: an open-addressing table of hashes and offsets,
+ * followed by the domains as packed, length-prefixed UTF-8 bytes. There are no per-domain objects,
+ * and lookups read straight from a character sequence, folding case on the fly, so they do not allocate.
+ * A hash match is always verified against the stored bytes.
+ * <p>
+ * Besides the listed domains, the table holds every label suffix of them ({@code com},
+ * {@code example.com}, ...) marked as intermediate. Hashes are accumulated from the end of the domain,
+ * so a walk from the TLD inwards can probe each longer suffix and stop as soon as it is not even an
+ * intermediate entry, like walking a reversed-label trie.
+ * <p>
+ * The buffer is also the on-disk format: {@link #writeTo(Path)} stores it behind a small versioned header,
+ * and {@link #load(Path)} memory-maps such a snapshot and queries it in place, without parsing.
+ */
+public final class DomainIndex {
+    private static final int MAX_DOMAIN_BYTES = 255;
+    private static final int HEADER_BYTES = 12;
+
+    private static final int SNAPSHOT_MAGIC = 0x4D4A4449; // "MJDI"
+    private static final int SNAPSHOT_VERSION = 1;
+    private static final int SNAPSHOT_HEADER_BYTES = 8;
+
+    private static final int ABSENT = 0;
+    private static final int INTERMEDIATE = 1;
+    private static final int LISTED = 2;
+
+    private final ByteBuffer buffer;
+    private final int count;
+    private final int entries;
+    private final int mask;
+    private final int offsetsStart;
+    private final int dataStart;
+
+    private DomainIndex(ByteBuffer buffer) {
+        this.buffer = buffer;
+        this.count = buffer.getInt(0);
+        this.entries = buffer.getInt(4);
+        int tableSize = buffer.getInt(8);
+        this.mask = tableSize - 1;
+        this.offsetsStart = HEADER_BYTES + tableSize * 4;
+        this.dataStart = offsetsStart + tableSize * 4;
+    }
+
+    /**
+     * Builds an index of the given domains. Domains are trimmed and lowercased;
+     * blank entries, comments starting with {@code #} and duplicates are skipped.
+     *
+     * @param domains the domains to index
+     * @return the index
+     */
+    public static DomainIndex of(Collection<String> domains) {
+        // Listed domains map to true, label suffixes that are only parents of listed domains to false
+        TreeMap<String, Boolean> normalized = new TreeMap<>();
+        for (String domain : domains) {
+            String value = domain.trim().toLowerCase(Locale.ROOT);
+            if (!value.isEmpty() && !value.startsWith("#")
+                    && value.getBytes(StandardCharsets.UTF_8).length <= MAX_DOMAIN_BYTES) {
+                normalized.put(value, true);
+                for (int dot = value.indexOf('.'); dot != -1; dot = value.indexOf('.', dot + 1)) {
+                    normalized.putIfAbsent(value.substring(dot + 1), false);
+                }
+            }
+        }
+
+        int listed = 0;
+        int dataSize = 0;
+        for (Map.Entry<String, Boolean> entry : normalized.entrySet()) {
+            listed += entry.getValue() ? 1 : 0;
+            dataSize += 2 + entry.getKey().getBytes(StandardCharsets.UTF_8).length;
+        }
+        int tableSize = Integer.highestOneBit(Math.max(normalized.size(), 1) * 2 - 1) << 1;
+
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + tableSize * 8 + dataSize);
+        buffer.putInt(0, listed);
+        buffer.putInt(4, normalized.size());
+        buffer.putInt(8, tableSize);
+        int mask = tableSize - 1;
+        int offsetsStart = HEADER_BYTES + tableSize * 4;
+        int dataStart = offsetsStart + tableSize * 4;
+
+        int offset = 0;
+        for (Map.Entry<String, Boolean> entry : normalized.entrySet()) {
+            String domain = entry.getKey();
+            byte[] bytes = domain.getBytes(StandardCharsets.UTF_8);
+            buffer.put(dataStart + offset, (byte) bytes.length);
+            buffer.put(dataStart + offset + 1, (byte) (entry.getValue() ? LISTED : INTERMEDIATE));
+            buffer.put(dataStart + offset + 2, bytes);
+
+            int hash = hash(domain, 0, domain.length());
+            int slot = hash & mask;
+            while (buffer.getInt(offsetsStart + slot * 4) != 0) {
+                slot = (slot + 1) & mask;
+            }
+            buffer.putInt(HEADER_BYTES + slot * 4, hash);
+            buffer.putInt(offsetsStart + slot * 4, offset + 1);
+            offset += 2 + bytes.length;
+        }
+        return new DomainIndex(buffer.asReadOnlyBuffer());
+    }
+
+    /**
+     * Memory-maps a snapshot written by {@link #writeTo(Path)}. Lookups read the mapped file directly,
+     * so nothing is parsed; loading only checks that every entry lies within the file.
+     *
+     * @param path the snapshot file
+     * @return the index
+     * @throws IOException if the file cannot be read or is not a valid snapshot
+     */
+    public static DomainIndex load(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            // The mapping stays valid after the channel is closed
+            return fromSnapshot(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Reads an index from snapshot bytes written by {@link #writeTo(Path)}, without copying them.
+     *
+     * @param snapshot the snapshot bytes, from the current position to the limit
+     * @return the index
+     * @throws IOException if the bytes are not a valid snapshot
+     */
+    public static DomainIndex fromSnapshot(ByteBuffer snapshot) throws IOException {
+        ByteBuffer bytes = snapshot.slice().order(ByteOrder.BIG_ENDIAN);
+        if (bytes.remaining() < SNAPSHOT_HEADER_BYTES + HEADER_BYTES || bytes.getInt(0) != SNAPSHOT_MAGIC) {
+            throw new IOException("Not a domain index snapshot");
+        }
+        if (bytes.getInt(4) != SNAPSHOT_VERSION) {
+            throw new IOException("Unsupported domain index snapshot version: " + bytes.getInt(4));
+        }
+
+        ByteBuffer buffer = bytes.slice(SNAPSHOT_HEADER_BYTES, bytes.remaining() - SNAPSHOT_HEADER_BYTES);
+        int count = buffer.getInt(0);
+        int entries = buffer.getInt(4);
+        int tableSize = buffer.getInt(8);
+        if (tableSize <= 0 || Integer.bitCount(tableSize) != 1 || entries < count || count < 0
+                || entries > tableSize / 2 || (long) HEADER_BYTES + tableSize * 8L > buffer.remaining()) {
+            throw new IOException("Corrupt domain index snapshot");
+        }
+        checkEntries(buffer, count, entries, tableSize);
+        return new DomainIndex(buffer.asReadOnlyBuffer());
+    }
+
+    /**
+     * Checks that every table slot points at an entry inside the data region, whose UTF-8 sequences end
+     * within it, and that the slot counts match the header, so lookups cannot read out of bounds or
+     * probe a full table forever.
+     */
+    private static void checkEntries(ByteBuffer buffer, int count, int entries, int tableSize) throws IOException {
+        int offsetsStart = HEADER_BYTES + tableSize * 4;
+        int dataStart = offsetsStart + tableSize * 4;
+        int dataSize = buffer.remaining() - dataStart;
+        int occupied = 0;
+        int listed = 0;
+        for (int slot = 0; slot < tableSize; slot++) {
+            int offset = buffer.getInt(offsetsStart + slot * 4);
+            if (offset == 0) {
+                continue;
+            }
+            if (offset < 0 || offset - 1 > dataSize - 2) {
+                throw new IOException("Corrupt domain index snapshot: entry offset out of bounds");
+            }
+            int position = dataStart + offset - 1;
+            int end = position + 2 + (buffer.get(position) & 0xFF);
+            int state = buffer.get(position + 1);
+            if (end > dataStart + dataSize || (state != INTERMEDIATE && state != LISTED)) {
+                throw new IOException("Corrupt domain index snapshot: entry out of bounds");
+            }
+            for (int p = position + 2; p < end; ) {
+                int b = buffer.get(p) & 0xFF;
+                p += b < 0x80 ? 1 : b >= 0xF0 ? 4 : b >= 0xE0 ? 3 : 2;
+                if (p > end) {
+                    throw new IOException("Corrupt domain index snapshot: truncated UTF-8 sequence");
+                }
+            }
+            occupied++;
+            listed += state == LISTED ? 1 : 0;
+        }
+        if (occupied != entries || listed != count) {
+            throw new IOException("Corrupt domain index snapshot: entry count mismatch");
+        }
+    }
+
+    /**
+     * Writes this index as a snapshot that {@link #load(Path)} can map.
+     * The file is written next to the target and then moved into place, so a snapshot
+     * that is currently mapped is never modified.
+     *
+     * @param path the snapshot file
+     * @throws IOException if the file cannot be written
+     */
+    public void writeTo(Path path) throws IOException {
+        Path parent = path.toAbsolutePath().getParent();
+        Path temp = Files.createTempFile(parent, path.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                ByteBuffer header = ByteBuffer.allocate(SNAPSHOT_HEADER_BYTES);
+                header.putInt(SNAPSHOT_MAGIC).putInt(SNAPSHOT_VERSION).flip();
+                ByteBuffer body = buffer.duplicate().clear();
+                while (header.hasRemaining() || body.hasRemaining()) {
+                    channel.write(new ByteBuffer[]{header, body});
+                }
+            }
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * @return number of domains in the index
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Checks whether a domain is in the index, ignoring case.
+     *
+     * @param domain the domain
+     * @return true if the domain is in the index
+     */
+    public boolean contains(CharSequence domain) {
+        return contains(domain, 0, domain.length());
+    }
+
+    /**
+     * Checks whether the domain between two positions of a character sequence is in the index,
+     * ignoring case. Used to look up the domain of an email address without extracting it.
+     *
+     * @param chars the characters holding the domain
+     * @param start index of the first character of the domain
+     * @param end   index after the last character of the domain
+     * @return true if the domain is in the index
+     */
+    public boolean contains(CharSequence chars, int start, int end) {
+        if (start >= end) {
+            return false;
+        }
+        return find(hash(chars, start, end), chars, start, end) == LISTED;
+    }
+
+    /**
+     * Checks whether a domain or any of its parent domains is in the index, ignoring case.
+     * {@code x.mailinator.com} matches when {@code mailinator.com} is listed.
+     *
+     * @param chars the characters holding the domain
+     * @param start index of the first character of the domain
+     * @param end   index after the last character of the domain
+     * @return true if the domain or one of its parents is in the index
+     */
+    public boolean containsOrParent(CharSequence chars, int start, int end) {
+        return findLongestListedSuffix(chars, start, end) != -1;
+    }
+
+    /**
+     * Finds the longest listed domain that the given domain equals or is a subdomain of,
+     * in one walk from the TLD inwards, ignoring case.
+     *
+     * @param chars the characters holding the domain
+     * @param start index of the first character of the domain
+     * @param end   index after the last character of the domain
+     * @return index in {@code chars} where the longest listed domain starts, or -1 if there is none
+     */
+    public int findLongestListedSuffix(CharSequence chars, int start, int end) {
+        int longest = -1;
+        int hash = 0;
+        for (int i = end - 1; i >= start; i--) {
+            hash = hash * 31 + toLowerCase(chars.charAt(i));
+            if (i == start || chars.charAt(i - 1) == '.') {
+                int state = find(hash, chars, i, end);
+                if (state == ABSENT) {
+                    // No listed domain ends with this suffix, so none ends with a longer one
+                    break;
+                }
+                if (state == LISTED) {
+                    longest = i;
+                }
+            }
+        }
+        return longest;
+    }
+
+    private int find(int hash, CharSequence chars, int start, int end) {
+        int slot = hash & mask;
+        while (true) {
+            int offset = buffer.getInt(offsetsStart + slot * 4);
+            if (offset == 0) {
+                return ABSENT;
+            }
+            int position = dataStart + offset - 1;
+            if (buffer.getInt(HEADER_BYTES + slot * 4) == hash && matches(position, chars, start, end)) {
+                return buffer.get(position + 1);
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    /**
+     * Hash of the lowercased characters, accumulated from the end of the domain towards its start.
+     */
+    private static int hash(CharSequence chars, int start, int end) {
+        int hash = 0;
+        for (int i = end - 1; i >= start; i--) {
+            hash = hash * 31 + toLowerCase(chars.charAt(i));
+        }
+        return hash;
+    }
+
+    private boolean matches(int position, CharSequence chars, int start, int end) {
+        int p = position + 2;
+        int limit = p + (buffer.get(position) & 0xFF);
+        int i = start;
+
+        while (p < limit && i < end) {
+            int b = buffer.get(p) & 0xFF;
+            if (b < 0x80) {
+                if (toLowerCase(chars.charAt(i)) != b) {
+                    return false;
+                }
+                p++;
+                i++;
+                continue;
+            }
+
+            // Multi-byte UTF-8 sequence
+            int extra = b >= 0xF0 ? 3 : b >= 0xE0 ? 2 : 1;
+            int codePoint = b & (0x3F >> extra);
+            for (int k = 1; k <= extra; k++) {
+                codePoint = (codePoint << 6) | (buffer.get(p + k) & 0x3F);
+            }
+            p += extra + 1;
+
+            if (Character.isBmpCodePoint(codePoint)) {
+                if (toLowerCase(chars.charAt(i)) != codePoint) {
+                    return false;
+                }
+                i++;
+            } else {
+                if (i + 1 >= end || chars.charAt(i) != Character.highSurrogate(codePoint)
+                        || chars.charAt(i + 1) != Character.lowSurrogate(codePoint)) {
+                    return false;
+                }
+                i += 2;
+            }
+        }
+        return p == limit && i == end;
+    }
+
+    private static char toLowerCase(char c) {
+        if (c < 0x80) {
+            return c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+        }
+        return Character.toLowerCase(c);
+    }
+
+    /**
+     * Calls the action for every domain in the index.
+     *
+     * @param action the action to call
+     */
+    public void forEach(Consumer<String> action) {
+        byte[] bytes = new byte[MAX_DOMAIN_BYTES];
+        int position = dataStart;
+        for (int i = 0; i < entries; i++) {
+            int length = buffer.get(position) & 0xFF;
+            if (buffer.get(position + 1) == LISTED) {
+                buffer.get(position + 2, bytes, 0, length);
+                action.accept(new String(bytes, 0, length, StandardCharsets.UTF_8));
+            }
+            position += 2 + length;
+        }
+    }
+
+    /**
+     * @return a new mutable set holding every domain in the index
+     */
+    public Set<String> toSet() {
+        Set<String> domains = new HashSet<>(count * 2);
+        forEach(domains::add);
+        return domains;
+    }
+}
@@ -0,0 +1,58 @@
+package dev.nightowl.mailjudge.util;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+
+/**
+ * Turns UTF-8 encoded addresses into character sequences for validation.
+ * ASCII input, which is nearly all real-world addresses, is wrapped as an {@link AsciiSequence}
+ * without copying. Anything else is decoded into a String.
+ */
+public final class Utf8Bytes {
+
+    private Utf8Bytes() {
+        throw new UnsupportedOperationException("Utility class");
+    }
+
+    /**
+     * Returns a character view of UTF-8 bytes.
+     *
+     * @param bytes  the UTF-8 bytes
+     * @param offset index of the first byte
+     * @param length number of bytes
+     * @return a zero-copy view for ASCII input, otherwise the decoded String
+     */
+    public static CharSequence view(byte[] bytes, int offset, int length) {
+        Objects.checkFromIndexSize(offset, length, bytes.length);
+        for (int i = offset, end = offset + length; i < end; i++) {
+            if (bytes[i] < 0) {
+                return new String(bytes, offset, length, StandardCharsets.UTF_8);
+            }
+        }
+        return new AsciiSequence(bytes, offset, length);
+    }
+
+    /**
+     * Returns a character view of UTF-8 bytes in a buffer. The buffer's position is not changed.
+     *
+     * @param buffer the buffer
+     * @param offset absolute index of the first byte
+     * @param length number of bytes
+     * @return a zero-copy view for ASCII input, otherwise the decoded String
+     */
+    public static CharSequence view(ByteBuffer buffer, int offset, int length) {
+        Objects.checkFromIndexSize(offset, length, buffer.limit());
+        if (buffer.hasArray()) {
+            return view(buffer.array(), buffer.arrayOffset() + offset, length);
+        }
+        for (int i = offset, end = offset + length; i < end; i++) {
+            if (buffer.get(i) < 0) {
+                byte[] bytes = new byte[length];
+                buffer.get(offset, bytes);
+                return new String(bytes, StandardCharsets.UTF_8);
+            }
+        }
+        return new AsciiSequence(buffer, offset, length);
+    }
+}
@@ -0,0 +1,141 @@
+package dev.nightowl.mailjudge;
+
+import dev.nightowl.mailjudge.rules.Ruleset;
+import dev.nightowl.mailjudge.rules.Rulesets;
+import dev.nightowl.mailjudge.rules.impl.MxRecordRule;
+import dev.nightowl.mailjudge.rules.impl.SyntaxRule;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class BulkValidatorTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void testSplitsRowsInOrder() throws Exception {
+        MailJudge judge = MailJudge.withRuleset(Rulesets.noDisposable());
+        List<String> rows = new ArrayList<>();
+        for (int i = 0; i < 2_000; i++) {
+            switch (i % 6) {
+                case 0 -> rows.add("user" + i + "@example.com");
+                case 1 -> rows.add("\"quoted" + i + "@example.com\"");
+                case 2 -> rows.add("bad" + i + "@@example.com");
+                case 3 -> rows.add("  spaced" + i + "@example.org\r");
+                case 4 -> rows.add("\u00fcser" + i + "@example.com");
+                default -> rows.add(i % 12 == 5 ? "" : "user" + i + "@example");
+            }
+        }
+        Path input = dir.resolve("emails.csv");
+        // No line break after the last row
+        Files.write(input, String.join("\n", rows).getBytes(StandardCharsets.UTF_8));
+
+        List<String> expectedValid = new ArrayList<>();
+        List<String> expectedInvalid = new ArrayList<>();
+        for (String row : rows) {
+            String line = row.endsWith("\r") ? row.substring(0, row.length() - 1) : row;
+            String email = line.strip();
+            if (email.startsWith("\"")) {
+                email = email.substring(1, email.length() - 1);
+            }
+            if (!email.isEmpty()) {
+                (judge.isValid(email) ? expectedValid : expectedInvalid).add(line);
+            }
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(3);
+        try {
+            Path valid = dir.resolve("valid.csv");
+            Path invalid = dir.resolve("invalid.csv");
+            BulkValidator.Summary summary = new BulkValidator(judge, 100).validate(input, valid, invalid, pool);
+
+            assertThat(Files.readAllLines(valid, StandardCharsets.UTF_8)).isEqualTo(expectedValid);
+            assertThat(Files.readAllLines(invalid, StandardCharsets.UTF_8)).isEqualTo(expectedInvalid);
+            assertThat(summary.valid()).isEqualTo(expectedValid.size());
+            assertThat(summary.invalid()).isEqualTo(expectedInvalid.size());
+            assertThat(expectedValid).isNotEmpty();
+            assertThat(expectedInvalid).isNotEmpty();
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void testCopiesCsvHeaderToEveryOutput() throws Exception {
+        MailJudge judge = MailJudge.withRuleset(Rulesets.noDisposable());
+        Path input = dir.resolve("emails.csv");
+        Files.writeString(input, "email\r\nuser@example.com\nbad@@example.com\n");
+        Path valid = dir.resolve("valid.csv");
+        Path invalid = dir.resolve("invalid.csv");
+        Path inconclusive = dir.resolve("inconclusive.csv");
+
+        BulkValidator.Summary summary = new BulkValidator(judge, 100)
+                .validate(input, valid, invalid, inconclusive, ForkJoinPool.commonPool());
+
+        assertThat(Files.readAllLines(valid)).containsExactly("email", "user@example.com");
+        assertThat(Files.readAllLines(invalid)).containsExactly("email", "bad@@example.com");
+        assertThat(Files.readAllLines(inconclusive)).containsExactly("email");
+        assertThat(summary).isEqualTo(new BulkValidator.Summary(1, 1, 0));
+
+        // A plain list has no header
+        Path list = dir.resolve("emails.txt");
+        Files.writeString(list, "email\nuser@example.com\n");
+        assertThat(new BulkValidator(judge, 100).validate(list, valid, invalid))
+                .isEqualTo(new BulkValidator.Summary(1, 1, 0));
+    }
+
+    @Test
+    void testFailedLookupsAreInconclusive() throws Exception {
+        MxRecordRule rule = new MxRecordRule(
+                domain -> CompletableFuture.failedFuture(new RejectedExecutionException("DNS limit")));
+        rule.getCache().putPositive("example.net", 300);
+        MailJudge judge = MailJudge.withRuleset(Ruleset.builder()
+                .rule(new SyntaxRule())
+                .rule(rule)
+                .build());
+        Path input = dir.resolve("emails.txt");
+        Files.writeString(input, "user@example.org\nuser@example.net\nuser@@example.net\nother@example.org\n");
+        Path valid = dir.resolve("valid.txt");
+        Path invalid = dir.resolve("invalid.txt");
+        Path inconclusive = dir.resolve("inconclusive.txt");
+
+        BulkValidator.Summary summary = new BulkValidator(judge, 100)
+                .validate(input, valid, invalid, inconclusive, ForkJoinPool.commonPool());
+
+        assertThat(summary).isEqualTo(new BulkValidator.Summary(1, 1, 2));
+        assertThat(Files.readAllLines(valid)).containsExactly("user@example.net");
+        assertThat(Files.readAllLines(invalid)).containsExactly("user@@example.net");
+        assertThat(Files.readAllLines(inconclusive)).containsExactly("user@example.org", "other@example.org");
+
+        // Without an output of their own they are written with the invalid rows, but still counted apart
+        summary = new BulkValidator(judge, 100).validate(input, valid, invalid);
+        assertThat(summary).isEqualTo(new BulkValidator.Summary(1, 1, 2));
+        assertThat(Files.readAllLines(invalid))
+                .containsExactly("user@example.org", "user@@example.net", "other@example.org");
+    }
+
+    @Test
+    void testRejectsLineThatIsTooLong() throws Exception {
+        MailJudge judge = MailJudge.withRuleset(Rulesets.noDisposable());
+        Path input = dir.resolve("emails.txt");
+        Files.writeString(input, "user@example.com\n" + "a".repeat(100_000) + "\nuser@example.org\n");
+
+        assertThatThrownBy(() -> new BulkValidator(judge, 100)
+                .validate(input, dir.resolve("valid.txt"), dir.resolve("invalid.txt")))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("Line longer than");
+    }
+}
@@ -1,5 +1,7 @@
 package dev.nightowl.mailjudge;
 
+import dev.nightowl.mailjudge.rules.CompiledRuleset;
+import dev.nightowl.mailjudge.rules.Ruleset;
 import dev.nightowl.mailjudge.rules.Rulesets;
 import org.openjdk.jmh.annotations.*;
 
@@ -27,10 +29,14 @@ public class EmailValidationBenchmark {
     );
 
     private MailJudge standardJudge;
+    private Ruleset standardRuleset;
+    private CompiledRuleset compiledStandard;
 
     @Setup
     public void setup() {
         standardJudge = MailJudge.withRuleset(Rulesets.standard());
+        standardRuleset = Rulesets.standard();
+        compiledStandard = standardRuleset.compile();
     }
 
     // ========== MailJudge Benchmarks ==========
@@ -47,12 +53,34 @@ public class EmailValidationBenchmark {
 
     @Benchmark
     public ValidationResult mailJudgeStandardDetailedValid() {
-        return standardJudge.validateQ(VALID_EMAIL);
+        return standardJudge.validate(VALID_EMAIL);
     }
 
     @Benchmark
     public ValidationResult mailJudgeStandardDetailedInvalid() {
-        return standardJudge.validateQ(INVALID_EMAIL);
+        return standardJudge.validate(INVALID_EMAIL);
+    }
+
+    // ========== Rule-by-rule vs fused single pass ==========
+
+    @Benchmark
+    public boolean rulesetRuleByRuleValid() {
+        return standardRuleset.validate(VALID_EMAIL);
+    }
+
+    @Benchmark
+    public boolean rulesetRuleByRuleInvalid() {
+        return standardRuleset.validate(INVALID_EMAIL);
+    }
+
+    @Benchmark
+    public boolean rulesetFusedValid() {
+        return compiledStandard.validate(VALID_EMAIL);
+    }
+
+    @Benchmark
+    public boolean rulesetFusedInvalid() {
+        return compiledStandard.validate(INVALID_EMAIL);
     }
 
     // ========== Regex Benchmarks (for comparison) ==========
@@ -0,0 +1,148 @@
+package dev.nightowl.mailjudge;
+
+import dev.nightowl.mailjudge.rules.CompiledRuleset;
+import dev.nightowl.mailjudge.rules.ParsedEmail;
+import dev.nightowl.mailjudge.rules.Rule;
+import dev.nightowl.mailjudge.rules.Ruleset;
+import dev.nightowl.mailjudge.rules.impl.DisposableRule;
+import dev.nightowl.mailjudge.rules.impl.DomainRule;
+import dev.nightowl.mailjudge.rules.impl.LengthRule;
+import dev.nightowl.mailjudge.rules.impl.LocalPartRule;
+import dev.nightowl.mailjudge.rules.impl.SyntaxRule;
+import dev.nightowl.mailjudge.rules.impl.TldRule;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark comparing the interpreted rule loop with the generated class of inlined rule calls,
+ * for rulesets mixing built-in and custom rules.
+ *
+ * Run with: ./gradlew benchmark
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 10, time = 1)
+public class InlineRulesBenchmark {
+
+    private static final String VALID_EMAIL = "user.name+tag@example.co.uk";
+
+    @Param({"3", "6", "12"})
+    private int ruleCount;
+
+    private CompiledRuleset interpreted;
+    private CompiledRuleset generated;
+    private final ParsedEmail scratch = new ParsedEmail();
+
+    @Setup
+    public void setup() {
+        List<Rule> rules = rules().subList(0, ruleCount);
+        interpreted = Ruleset.builder().rules(rules).build().compile();
+        generated = Ruleset.builder().rules(rules).inlineRules(true).build().compile();
+    }
+
+    @Benchmark
+    public int interpretedQuick() {
+        return interpreted.firstFailureIndex(VALID_EMAIL, scratch);
+    }
+
+    @Benchmark
+    public int generatedQuick() {
+        return generated.firstFailureIndex(VALID_EMAIL, scratch);
+    }
+
+    @Benchmark
+    public long interpretedDetailed() {
+        return interpreted.failureMask(VALID_EMAIL, scratch);
+    }
+
+    @Benchmark
+    public long generatedDetailed() {
+        return generated.failureMask(VALID_EMAIL, scratch);
+    }
+
+    /**
+     * Built-in rules interleaved with custom ones, so no ruleset can be fused.
+     */
+    private static List<Rule> rules() {
+        List<Rule> rules = new ArrayList<>();
+        rules.add(new SyntaxRule());
+        rules.add(new MaxLengthRule(64));
+        rules.add(new DisposableRule(Set.of("mailinator.com")));
+        rules.add(new LengthRule());
+        rules.add(new ForbiddenCharRule('!'));
+        rules.add(new LocalPartRule());
+        rules.add(new DomainRule());
+        rules.add(new BlockedLocalPartRule("admin"));
+        rules.add(new TldRule());
+        rules.add(new ForbiddenCharRule('#'));
+        rules.add(new MaxLengthRule(200));
+        rules.add(new TldRule(4));
+        return rules;
+    }
+
+    private static final class MaxLengthRule implements Rule {
+        private final int maxLength;
+
+        private MaxLengthRule(int maxLength) {
+            this.maxLength = maxLength;
+        }
+
+        @Override
+        public boolean validate(String email) {
+            return email.length() <= maxLength;
+        }
+
+        @Override
+        public boolean validate(ParsedEmail email) {
+            return email.length() <= maxLength;
+        }
+
+        @Override
+        public String getErrorMessage() {
+            return "Too long";
+        }
+    }
+
+    private static final class ForbiddenCharRule implements Rule {
+        private final char forbidden;
+
+        private ForbiddenCharRule(char forbidden) {
+            this.forbidden = forbidden;
+        }
+
+        @Override
+        public boolean validate(String email) {
+            return email.indexOf(forbidden) == -1;
+        }
+
+        @Override
+        public String getErrorMessage() {
+            return "Forbidden character";
+        }
+    }
+
+    private static final class BlockedLocalPartRule implements Rule {
+        private final String blocked;
+
+        private BlockedLocalPartRule(String blocked) {
+            this.blocked = blocked;
+        }
+
+        @Override
+        public boolean validate(String email) {
+            return !email.startsWith(blocked + "@");
+        }
+
+        @Override
+        public String getErrorMessage() {
+            return "Blocked local part";
+        }
+    }
+}
@@ -0,0 +1,240 @@
+package dev.nightowl.mailjudge;
+
+import com.sun.management.ThreadMXBean;
+import dev.nightowl.mailjudge.dns.MxCache;
+import dev.nightowl.mailjudge.dns.MxRecords;
+import dev.nightowl.mailjudge.dns.MxResolver;
+import dev.nightowl.mailjudge.rules.ErrorCode;
+import dev.nightowl.mailjudge.rules.Ruleset;
+import dev.nightowl.mailjudge.rules.Rulesets;
+import dev.nightowl.mailjudge.rules.impl.DisposableRule;
+import dev.nightowl.mailjudge.rules.impl.DomainRule;
+import dev.nightowl.mailjudge.rules.impl.LengthRule;
+import dev.nightowl.mailjudge.rules.impl.LocalPartRule;
+import dev.nightowl.mailjudge.rules.impl.MxRecordRule;
+import dev.nightowl.mailjudge.rules.impl.StubDnsServer;
+import dev.nightowl.mailjudge.rules.impl.SyntaxRule;
+import dev.nightowl.mailjudge.rules.impl.TldRule;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MailJudgeTest {
+
+    private final MailJudge judge = MailJudge.withRuleset(Rulesets.standard());
+
+    @Test
+    void testByteInputMatchesStringInput() {
+        String[] emails = {
+                "user@example.com", "user.name+tag@example.co.uk", "invalid..email@@example..com",
+                "user@example", "\u00fcser@example.com", "user@ex\u00e4mple.com", "user@example.c\u00f6m"
+        };
+        for (String email : emails) {
+            byte[] utf8 = email.getBytes(StandardCharsets.UTF_8);
+            byte[] padded = new byte[utf8.length + 4];
+            System.arraycopy(utf8, 0, padded, 2, utf8.length);
+
+            ValidationResult expected = judge.validate(email);
+            assertThat(judge.validate(padded, 2, utf8.length)).as(email).isEqualTo(expected);
+            assertThat(judge.validate(new StringBuilder(email))).as(email).isEqualTo(expected);
+            assertThat(judge.validateQ(padded, 2, utf8.length)).as(email).isEqualTo(judge.validateQ(email));
+            assertThat(judge.isValid(padded, 2, utf8.length)).as(email).isEqualTo(expected.valid());
+
+            ByteBuffer direct = ByteBuffer.allocateDirect(padded.length).put(padded);
+            direct.position(2).limit(2 + utf8.length);
+            assertThat(judge.validate(direct)).as(email).isEqualTo(expected);
+            assertThat(judge.validateQ(direct)).as(email).isEqualTo(judge.validateQ(email));
+            assertThat(direct.position()).isEqualTo(2);
+        }
+    }
+
+    @Test
+    void testLengthIsCountedInCharacters() {
+        // 64 two-byte characters: 128 bytes, but still a 64 character local part
+        String local = "\u00e9".repeat(64);
+        MailJudge lengthOnly = MailJudge.withRuleset(Ruleset.builder()
+                .rule(new LengthRule())
+                .build());
+        byte[] utf8 = (local + "@example.com").getBytes(StandardCharsets.UTF_8);
+
+        assertThat(lengthOnly.isValid(utf8, 0, utf8.length)).isTrue();
+    }
+
+    @Test
+    void testEmptyInput() {
+        assertThat(judge.validate(new byte[0], 0, 0).valid()).isFalse();
+        assertThat(judge.isValid((CharSequence) null)).isFalse();
+    }
+
+    @Test
+    void testValidateAllKeepsInputOrder() {
+        String[] emails = new String[10_000];
+        for (int i = 0; i < emails.length; i++) {
+            emails[i] = i % 3 == 0 ? "user" + i + "@@example.com" : "user" + i + "@example.com";
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            List<ValidationResult> detailed = judge.validateAll(emails, pool);
+            List<ValidationResult> quick = judge.validateAllQ(Arrays.asList(emails), pool);
+
+            assertThat(detailed).hasSize(emails.length);
+            for (int i = 0; i < emails.length; i++) {
+                assertThat(detailed.get(i)).isEqualTo(judge.validate(emails[i]));
+                assertThat(quick.get(i)).isEqualTo(judge.validateQ(emails[i]));
+            }
+        } finally {
+            pool.shutdown();
+        }
+
+        assertThat(judge.validateAll(List.of("a@b.co", "invalid"))).extracting(ValidationResult::valid)
+                .containsExactly(true, false);
+    }
+
+    @Test
+    void testCompactResults() {
+        List<String> emails = new ArrayList<>();
+        for (int i = 0; i < 5_000; i++) {
+            emails.add(i % 7 == 0 ? "user" + i + "@example" : "user" + i + "@example.com");
+        }
+        emails.add("");
+
+        ForkJoinPool pool = new ForkJoinPool(3);
+        try {
+            ValidationResults results = judge.validateAllCompact(emails, pool);
+
+            assertThat(results.size()).isEqualTo(emails.size());
+            for (int i = 0; i < emails.size(); i++) {
+                assertThat(results.get(i)).isEqualTo(judge.validateQ(emails.get(i)));
+                assertThat(results.isValid(i)).isEqualTo(results.getCode(i) == ValidationResults.VALID);
+            }
+            assertThat(results.validCount()).isEqualTo(results.toBitSet().cardinality());
+            assertThat(results.getFailedRule(0)).isInstanceOf(DomainRule.class);
+            assertThat(results.getCode(emails.size() - 1)).isEqualTo(ValidationResults.EMPTY);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void testFailureMask() {
+        MailJudge judge = MailJudge.withRuleset(Ruleset.builder()
+                .rule(new SyntaxRule())
+                .rule(new LocalPartRule())
+                .rule(new DomainRule())
+                .rule(new TldRule())
+                .rule(new DisposableRule(Set.of("mailinator.com")))
+                .build());
+        String[] emails = {"user@example.com", "..user@example", "user@@example.com", "", "user@mailinator.com"};
+        for (String email : emails) {
+            long mask = judge.failureMask(email);
+            assertThat(judge.toResult(email, mask)).isEqualTo(judge.validate(email));
+        }
+        assertThat(judge.failureMask("user@example.com")).isZero();
+        assertThat(judge.errorCodes(judge.failureMask("..user@example")))
+                .containsExactlyInAnyOrder(ErrorCode.LOCAL_PART, ErrorCode.DOMAIN, ErrorCode.TLD);
+        assertThat(judge.errorCodes(judge.failureMask("user@mailinator.com"))).containsExactly(ErrorCode.DISPOSABLE);
+
+        ThreadMXBean threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        long sum = 0;
+        for (int i = 0; i < 20_000; i++) {
+            sum += judge.failureMask(emails[i % emails.length]);
+        }
+        long before = threads.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < 20_000; i++) {
+            sum += judge.failureMask(emails[i % emails.length]);
+        }
+        assertThat(threads.getThreadAllocatedBytes(threadId) - before).isLessThan(20_000);
+        assertThat(sum).isNotZero();
+    }
+
+    @Test
+    void testBatchRunsDomainRulesOncePerDomain() throws Exception {
+        try (StubDnsServer dns = new StubDnsServer().withMx("example.com", 300)
+                .withMx("kxample.com", 300).withoutMx("nomx.com")) {
+            // Nothing is cached, so every MX verdict costs a query
+            MxCache noCache = new MxCache(1, Duration.ZERO, Duration.ZERO);
+            MailJudge mxJudge = MailJudge.withRuleset(Ruleset.builder()
+                    .rule(new SyntaxRule())
+                    .rule(new LocalPartRule())
+                    .rule(new DomainRule())
+                    .rule(new MxRecordRule(dns.resolver(), noCache))
+                    .build());
+
+            // The Kelvin sign lowercases to 'k' in toLowerCase(), but is not a valid domain character
+            String[] domains = {"example.com", "EXAMPLE.com", "nomx.com", "missing.com", "bad..com",
+                    "\u212Axample.com", "kxample.com"};
+            List<String> emails = new ArrayList<>();
+            for (int i = 0; i < 500; i++) {
+                String local = i % 11 == 0 ? "..user" + i : "user" + i;
+                emails.add(i % 13 == 0 ? local : local + "@" + domains[i % domains.length]);
+            }
+            emails.add("");
+
+            ForkJoinPool pool = new ForkJoinPool(4);
+            try {
+                List<ValidationResult> detailed = mxJudge.validateAll(emails, pool);
+                assertThat(dns.getQueryCount()).isEqualTo(4);
+                List<ValidationResult> quick = mxJudge.validateAllQ(emails, pool);
+                ValidationResults compact = mxJudge.validateAllCompact(emails, pool);
+                assertThat(dns.getQueryCount()).isEqualTo(12);
+
+                for (int i = 0; i < emails.size(); i++) {
+                    String email = emails.get(i);
+                    assertThat(detailed.get(i)).as(email).isEqualTo(mxJudge.validate(email));
+                    assertThat(quick.get(i)).as(email).isEqualTo(mxJudge.validateQ(email));
+                    assertThat(compact.get(i)).as(email).isEqualTo(quick.get(i));
+                }
+            } finally {
+                pool.shutdown();
+            }
+        }
+    }
+
+    @Test
+    void testBatchLooksUpDomainsConcurrently() {
+        // Answers every query after 50 ms, counting how many are outstanding at once
+        AtomicInteger outstanding = new AtomicInteger();
+        AtomicInteger mostOutstanding = new AtomicInteger();
+        Executor later = CompletableFuture.delayedExecutor(50, TimeUnit.MILLISECONDS);
+        MxResolver slow = domain -> {
+            mostOutstanding.accumulateAndGet(outstanding.incrementAndGet(), Math::max);
+            return CompletableFuture.supplyAsync(() -> {
+                outstanding.decrementAndGet();
+                return new MxRecords(List.of("mx." + domain), 300);
+            }, later);
+        };
+        MailJudge mxJudge = MailJudge.withRuleset(Ruleset.builder()
+                .rule(new SyntaxRule())
+                .rule(new MxRecordRule(slow))
+                .build());
+
+        List<String> emails = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            emails.add("user@domain" + i + ".com");
+        }
+        ForkJoinPool pool = new ForkJoinPool(2);
+        try {
+            assertThat(mxJudge.validateAll(emails, pool)).allMatch(ValidationResult::valid);
+        } finally {
+            pool.shutdown();
+        }
+        // Lookups are not bound by the two workers
+        assertThat(mostOutstanding.get()).isGreaterThan(50);
+    }
+}
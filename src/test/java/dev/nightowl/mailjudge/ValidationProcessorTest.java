@@ -0,0 +1,185 @@
+package dev.nightowl.mailjudge;
+
+import dev.nightowl.mailjudge.rules.AsyncRule;
+import dev.nightowl.mailjudge.rules.ParsedEmail;
+import dev.nightowl.mailjudge.rules.Ruleset;
+import dev.nightowl.mailjudge.rules.impl.SyntaxRule;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ValidationProcessorTest {
+
+    private final ScheduledExecutorService dns = Executors.newScheduledThreadPool(4);
+    private final AtomicInteger lookups = new AtomicInteger();
+    private final AtomicInteger outstanding = new AtomicInteger();
+    private final AtomicInteger maxOutstanding = new AtomicInteger();
+
+    /**
+     * Stands in for an MX lookup that answers after a millisecond and rejects domains starting with "no".
+     */
+    private final AsyncRule slowLookup = new AsyncRule() {
+        @Override
+        public CompletableFuture<Boolean> validateAsync(ParsedEmail email) {
+            lookups.incrementAndGet();
+            maxOutstanding.accumulateAndGet(outstanding.incrementAndGet(), Math::max);
+            boolean valid = !email.getDomain().startsWith("no");
+            CompletableFuture<Boolean> result = new CompletableFuture<>();
+            dns.schedule(() -> {
+                outstanding.decrementAndGet();
+                result.complete(valid);
+            }, 1, TimeUnit.MILLISECONDS);
+            return result;
+        }
+
+        @Override
+        public boolean validate(String email) {
+            return validateAsync(ParsedEmail.parse(email)).join();
+        }
+
+        @Override
+        public String getErrorMessage() {
+            return "No MX";
+        }
+    };
+
+    private final MailJudge judge = MailJudge.withRuleset(Ruleset.builder()
+            .rule(new SyntaxRule())
+            .rule(slowLookup)
+            .build());
+
+    @AfterEach
+    void stopDns() {
+        dns.shutdownNow();
+    }
+
+    private static String email(int i) {
+        return switch (i % 3) {
+            case 0 -> "user" + i + "@example.com";
+            case 1 -> "user" + i + "@@example.com";
+            default -> "user" + i + "@nomx.com";
+        };
+    }
+
+    @Test
+    void testEmitsInOrderWithBoundedLookups() throws Exception {
+        ValidationProcessor processor = new ValidationProcessor(judge, 8);
+        RecordingSubscriber subscriber = new RecordingSubscriber(10);
+        processor.subscribe(subscriber);
+
+        try (SubmissionPublisher<String> publisher = new SubmissionPublisher<>()) {
+            publisher.subscribe(processor);
+            for (int i = 0; i < 600; i++) {
+                publisher.submit(email(i));
+            }
+        }
+        assertThat(subscriber.done.await(10, TimeUnit.SECONDS)).isTrue();
+
+        assertThat(subscriber.error).isNull();
+        assertThat(subscriber.results).hasSize(600);
+        for (int i = 0; i < 600; i++) {
+            ValidationResult result = subscriber.results.get(i);
+            assertThat(result.email()).isEqualTo(email(i));
+            assertThat(result.valid()).isEqualTo(i % 3 == 0);
+        }
+        // Syntax errors never reach the lookup
+        assertThat(lookups.get()).isEqualTo(400);
+        assertThat(maxOutstanding.get()).isLessThanOrEqualTo(8);
+    }
+
+    @Test
+    void testStopsRequestingWithoutDemand() throws Exception {
+        ValidationProcessor processor = new ValidationProcessor(judge, 4);
+        RecordingSubscriber subscriber = new RecordingSubscriber(0);
+        processor.subscribe(subscriber);
+        subscriber.subscription.request(2);
+
+        AtomicInteger produced = new AtomicInteger();
+        processor.onSubscribe(new Flow.Subscription() {
+            @Override
+            public void request(long n) {
+                for (long i = 0; i < n; i++) {
+                    processor.onNext("user" + produced.getAndIncrement() + "@example.com");
+                }
+            }
+
+            @Override
+            public void cancel() {
+            }
+        });
+        Thread.sleep(200);
+
+        assertThat(subscriber.results).hasSize(2);
+        assertThat(produced.get()).isEqualTo(6);
+
+        subscriber.subscription.request(3);
+        Thread.sleep(200);
+        assertThat(subscriber.results).hasSize(5);
+        assertThat(produced.get()).isEqualTo(9);
+    }
+
+    @Test
+    void testStreamAdapter() {
+        List<String> emails = IntStream.range(0, 300).mapToObj(ValidationProcessorTest::email).collect(Collectors.toList());
+
+        List<ValidationResult> results = judge.validateStream(emails.stream(), 4).collect(Collectors.toList());
+
+        assertThat(results).extracting(ValidationResult::email).isEqualTo(emails);
+        assertThat(results).filteredOn(ValidationResult::valid).hasSize(100);
+        assertThat(maxOutstanding.get()).isLessThanOrEqualTo(4);
+    }
+
+    private static final class RecordingSubscriber implements Flow.Subscriber<ValidationResult> {
+        private final int batch;
+        private final List<ValidationResult> results = new ArrayList<>();
+        private final CountDownLatch done = new CountDownLatch(1);
+        private volatile Flow.Subscription subscription;
+        private volatile Throwable error;
+        private int received;
+
+        private RecordingSubscriber(int batch) {
+            this.batch = batch;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            if (batch > 0) {
+                subscription.request(batch);
+            }
+        }
+
+        @Override
+        public synchronized void onNext(ValidationResult item) {
+            results.add(item);
+            if (batch > 0 && ++received % batch == 0) {
+                subscription.request(batch);
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            error = throwable;
+            done.countDown();
+        }
+
+        @Override
+        public void onComplete() {
+            done.countDown();
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package dev.nightowl.mailjudge.dns;
+
+import dev.nightowl.mailjudge.rules.impl.MxRecordRule;
+import dev.nightowl.mailjudge.rules.impl.StubDnsServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class HedgedMxResolverTest {
+
+    private StubDnsServer slow;
+    private StubDnsServer fast;
+
+    @BeforeEach
+    void startDns() throws Exception {
+        slow = new StubDnsServer().withMx("example.com", 300).withDelay(Duration.ofMillis(400));
+        fast = new StubDnsServer().withMx("example.com", 300);
+    }
+
+    @AfterEach
+    void stopDns() {
+        slow.close();
+        fast.close();
+    }
+
+    @Test
+    void testHedgesSlowResolver() {
+        HedgedMxResolver resolver = new HedgedMxResolver(List.of(
+                new DnsjavaMxResolver(slow.resolver()), new DnsjavaMxResolver(fast.resolver())),
+                0.95, Duration.ofMillis(5), Duration.ofMillis(50));
+
+        long start = System.nanoTime();
+        MxRecords records = resolver.lookupMx("example.com").join();
+        assertThat(System.nanoTime() - start).isLessThan(300_000_000L);
+        assertThat(records.hosts()).containsExactly("mx.example.com");
+        assertThat(records.ttl()).isEqualTo(300);
+        assertThat(resolver.getHedgeCount()).isEqualTo(1);
+
+        // The fast resolver is now asked first and answers within its own percentile
+        for (int i = 0; i < 5; i++) {
+            assertThat(resolver.lookupMx("example.com").join().isEmpty()).isFalse();
+        }
+        assertThat(resolver.lookupMx("missing.com").join().isEmpty()).isTrue();
+        assertThat(resolver.getHedgeCount()).isEqualTo(1);
+        assertThat(slow.getQueryCount()).isEqualTo(1);
+        assertThat(resolver.getHedgeDelay(1)).isLessThan(Duration.ofMillis(50));
+    }
+
+    @Test
+    void testFailureHedgesImmediately() {
+        MxResolver failing = domain -> CompletableFuture.failedFuture(new IOException("SERVFAIL"));
+        HedgedMxResolver resolver = new HedgedMxResolver(List.of(failing, new DnsjavaMxResolver(fast.resolver())),
+                0.95, Duration.ofSeconds(2), Duration.ofSeconds(2));
+
+        long start = System.nanoTime();
+        assertThat(resolver.lookupMx("example.com").join().isEmpty()).isFalse();
+        assertThat(System.nanoTime() - start).isLessThan(1_000_000_000L);
+
+        HedgedMxResolver allFailing = new HedgedMxResolver(List.of(failing, failing));
+        assertThatThrownBy(() -> allFailing.lookupMx("example.com").join())
+                .isInstanceOf(CompletionException.class)
+                .hasCauseInstanceOf(IOException.class);
+    }
+
+    @Test
+    void testFastFailingResolverIsNotPreferred() {
+        AtomicInteger refused = new AtomicInteger();
+        MxResolver refusing = domain -> {
+            refused.incrementAndGet();
+            return CompletableFuture.failedFuture(new IOException("REFUSED"));
+        };
+        HedgedMxResolver resolver = new HedgedMxResolver(List.of(refusing, new DnsjavaMxResolver(fast.resolver())),
+                0.95, Duration.ofMillis(20), Duration.ofMillis(200));
+
+        for (int i = 0; i < 20; i++) {
+            assertThat(resolver.lookupMx("example.com").join().isEmpty()).isFalse();
+        }
+        // Only the first query, before any samples, goes to the refusing resolver first
+        assertThat(refused.get()).isLessThan(5);
+        assertThat(resolver.getHedgeCount()).isLessThan(5);
+    }
+
+    @Test
+    void testRuleWithHedgedResolver() {
+        MxRecordRule rule = new MxRecordRule(new HedgedMxResolver(List.of(
+                new DnsjavaMxResolver(slow.resolver()), new DnsjavaMxResolver(fast.resolver())),
+                0.95, Duration.ofMillis(5), Duration.ofMillis(50)));
+
+        assertThat(rule.validate("user@example.com")).isTrue();
+        assertThat(rule.validate("user@missing.com")).isFalse();
+        assertThat(rule.getCache().get("missing.com")).isFalse();
+    }
+}
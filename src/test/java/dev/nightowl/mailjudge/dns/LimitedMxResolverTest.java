@@ -0,0 +1,116 @@
+package dev.nightowl.mailjudge.dns;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class LimitedMxResolverTest {
+    private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(4);
+
+    @AfterEach
+    void stopScheduler() {
+        scheduler.shutdownNow();
+    }
+
+    @Test
+    void testSettlesNearCapacity() {
+        // Answers in 2 ms up to 16 concurrent queries and drops the rest after a short timeout
+        AtomicInteger concurrent = new AtomicInteger();
+        MxResolver overloaded = domain -> {
+            CompletableFuture<MxRecords> result = new CompletableFuture<>();
+            boolean accepted = concurrent.incrementAndGet() <= 16;
+            if (!accepted) {
+                concurrent.decrementAndGet();
+            }
+            scheduler.schedule(() -> {
+                if (accepted) {
+                    concurrent.decrementAndGet();
+                    result.complete(new MxRecords(List.of("mx." + domain), 300));
+                } else {
+                    result.completeExceptionally(new IOException("Timed out"));
+                }
+            }, accepted ? 2 : 20, TimeUnit.MILLISECONDS);
+            return result;
+        };
+        LimitedMxResolver resolver = new LimitedMxResolver(overloaded, 4, 200, Duration.ofSeconds(30));
+
+        List<CompletableFuture<MxRecords>> lookups = new ArrayList<>();
+        for (int i = 0; i < 3000; i++) {
+            lookups.add(resolver.lookupMx("example" + i + ".com"));
+        }
+        long failed = lookups.stream().filter(lookup -> {
+            try {
+                lookup.join();
+                return false;
+            } catch (CompletionException e) {
+                return true;
+            }
+        }).count();
+
+        assertThat(resolver.getLimit()).isBetween(8, 24);
+        assertThat(failed).isLessThan(300);
+        assertThat(resolver.getInFlight()).isZero();
+        assertThat(resolver.getRejectedCount()).isZero();
+    }
+
+    @Test
+    void testBacksOffWhenLatencyRises() {
+        // Queues internally past 8 concurrent queries, so latency grows with the load
+        AtomicInteger concurrent = new AtomicInteger();
+        MxResolver queueing = domain -> {
+            CompletableFuture<MxRecords> result = new CompletableFuture<>();
+            int load = concurrent.incrementAndGet();
+            scheduler.schedule(() -> {
+                concurrent.decrementAndGet();
+                result.complete(MxRecords.none());
+            }, Math.max(2, 20L * load / 8 - 18), TimeUnit.MILLISECONDS);
+            return result;
+        };
+        LimitedMxResolver resolver = new LimitedMxResolver(queueing, 4, 200, Duration.ofSeconds(30));
+
+        List<CompletableFuture<MxRecords>> lookups = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            lookups.add(resolver.lookupMx("example" + i + ".com"));
+        }
+        lookups.forEach(CompletableFuture::join);
+
+        assertThat(resolver.getLimit()).isBetween(6, 16);
+    }
+
+    @Test
+    void testRejectsAfterMaxWait() {
+        MxResolver hanging = domain -> new CompletableFuture<>();
+
+        LimitedMxResolver failFast = new LimitedMxResolver(hanging, 1, 1, Duration.ZERO);
+        CompletableFuture<MxRecords> first = failFast.lookupMx("example.com");
+        assertThatThrownBy(() -> failFast.lookupMx("example.org").join())
+                .hasCauseInstanceOf(RejectedExecutionException.class);
+
+        // Cancelling a lookup frees its slot
+        first.cancel(false);
+        assertThat(failFast.getInFlight()).isZero();
+        assertThat(failFast.lookupMx("example.org").isDone()).isFalse();
+
+        LimitedMxResolver waiting = new LimitedMxResolver(hanging, 1, 1, Duration.ofMillis(50));
+        waiting.lookupMx("example.com");
+        long start = System.nanoTime();
+        assertThatThrownBy(() -> waiting.lookupMx("example.org").join())
+                .hasCauseInstanceOf(RejectedExecutionException.class);
+        assertThat(System.nanoTime() - start).isGreaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(50));
+        assertThat(waiting.getRejectedCount()).isEqualTo(1);
+    }
+}
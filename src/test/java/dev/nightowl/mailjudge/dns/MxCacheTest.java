@@ -0,0 +1,163 @@
+package dev.nightowl.mailjudge.dns;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class MxCacheTest {
+
+    private static class MutableClock extends Clock {
+        private Instant now = Instant.parse("2026-01-01T00:00:00Z");
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneOffset getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+
+    private final MutableClock clock = new MutableClock();
+
+    @Test
+    void testPositiveEntriesExpireWithRecordTtl() {
+        MxCache cache = new MxCache(100, Duration.ofMinutes(1), Duration.ofHours(1), clock);
+        cache.putPositive("example.com", 300);
+
+        assertThat(cache.get("example.com")).isTrue();
+        clock.advance(Duration.ofSeconds(299));
+        assertThat(cache.get("example.com")).isTrue();
+        clock.advance(Duration.ofSeconds(2));
+        assertThat(cache.get("example.com")).isNull();
+
+        assertThat(cache.getHitCount()).isEqualTo(2);
+        assertThat(cache.getMissCount()).isEqualTo(1);
+    }
+
+    @Test
+    void testTtlIsCapped() {
+        MxCache cache = new MxCache(100, Duration.ofMinutes(1), Duration.ofHours(1), clock);
+        cache.putPositive("example.com", 86_400);
+
+        clock.advance(Duration.ofMinutes(61));
+        assertThat(cache.get("example.com")).isNull();
+    }
+
+    @Test
+    void testNegativeEntriesUseNegativeTtl() {
+        MxCache cache = new MxCache(100, Duration.ofMinutes(1), Duration.ofHours(1), clock);
+        cache.putNegative("missing.com");
+
+        assertThat(cache.get("missing.com")).isFalse();
+        clock.advance(Duration.ofSeconds(61));
+        assertThat(cache.get("missing.com")).isNull();
+    }
+
+    @Test
+    void testLeastRecentlyUsedEntriesAreEvicted() {
+        MxCache cache = new MxCache(160, Duration.ofMinutes(1), Duration.ofHours(1), clock);
+        for (int i = 0; i < 1_000; i++) {
+            cache.putPositive("domain" + i + ".com", 300);
+        }
+
+        assertThat(cache.size()).isLessThanOrEqualTo(160);
+        assertThat(cache.getEvictionCount()).isEqualTo(1_000 - cache.size());
+        assertThat(cache.get("domain999.com")).isTrue();
+        assertThat(cache.get("domain0.com")).isNull();
+    }
+
+    @Test
+    void testSizeStaysWithinMaximumThatIsNotAMultipleOfTheSegments() {
+        for (int maximumSize : new int[]{1, 3, 100, 1_001}) {
+            MxCache cache = new MxCache(maximumSize, Duration.ofMinutes(1), Duration.ofHours(1), clock);
+            for (int i = 0; i < 5_000; i++) {
+                cache.putPositive("domain" + i + ".com", 300);
+            }
+            assertThat(cache.size()).isLessThanOrEqualTo(maximumSize);
+            assertThat(cache.get("domain4999.com")).isTrue();
+        }
+    }
+
+    @Test
+    void testSnapshotKeepsRemainingTtl(@TempDir Path dir) throws IOException {
+        MxCache cache = new MxCache(100, Duration.ofMinutes(1), Duration.ofHours(1), clock);
+        cache.putPositive("example.com", 300);
+        cache.putPositive("short.com", 30);
+        cache.putNegative("missing.com");
+        clock.advance(Duration.ofSeconds(31));
+
+        Path snapshot = dir.resolve("nested").resolve("mx-cache.bin");
+        assertThat(cache.writeTo(snapshot)).isEqualTo(2);
+
+        clock.advance(Duration.ofSeconds(100));
+        MxCache restored = new MxCache(100, Duration.ofMinutes(1), Duration.ofHours(1), clock);
+        restored.putPositive("missing.com", 300);
+        // short.com expired before the snapshot, missing.com after it
+        assertThat(restored.readFrom(snapshot)).isEqualTo(1);
+        assertThat(restored.get("example.com")).isTrue();
+        assertThat(restored.get("missing.com")).isTrue();
+        assertThat(restored.get("short.com")).isNull();
+
+        clock.advance(Duration.ofSeconds(170));
+        assertThat(restored.get("example.com")).isNull();
+
+        Files.writeString(snapshot, "not a snapshot");
+        assertThatThrownBy(() -> restored.readFrom(snapshot)).isInstanceOf(IOException.class);
+    }
+
+    @Test
+    void testStoreRoundTrip(@TempDir Path dir) {
+        MxCache cache = new MxCache();
+        cache.putPositive("example.com", 300);
+        Path snapshot = dir.resolve("mx-cache.bin");
+        try (MxCacheStore store = new MxCacheStore(cache, snapshot)) {
+            store.start(Duration.ofHours(1));
+        }
+
+        MxCacheStore restored = new MxCacheStore(new MxCache(), snapshot);
+        assertThat(restored.load()).isEqualTo(1);
+        assertThat(restored.getCache().get("example.com")).isTrue();
+        assertThat(new MxCacheStore(new MxCache(), dir.resolve("absent.bin")).load()).isZero();
+    }
+
+    @Test
+    void testTruncatedSnapshotLoadsNothing(@TempDir Path dir) throws IOException {
+        MxCache cache = new MxCache(100, Duration.ofMinutes(1), Duration.ofHours(1), clock);
+        for (int i = 0; i < 10; i++) {
+            cache.putPositive("domain" + i + ".com", 300);
+        }
+        Path snapshot = dir.resolve("mx-cache.bin");
+        cache.writeTo(snapshot);
+        byte[] bytes = Files.readAllBytes(snapshot);
+        Files.write(snapshot, Arrays.copyOf(bytes, bytes.length - 5));
+
+        MxCacheStore store = new MxCacheStore(new MxCache(100, Duration.ofMinutes(1), Duration.ofHours(1), clock),
+                snapshot);
+        assertThat(store.load()).isZero();
+        assertThat(store.getCache().size()).isZero();
+    }
+}
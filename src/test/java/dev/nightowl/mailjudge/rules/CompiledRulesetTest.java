@@ -0,0 +1,358 @@
+package dev.nightowl.mailjudge.rules;
+
+import dev.nightowl.mailjudge.rules.impl.DisposableRule;
+import dev.nightowl.mailjudge.rules.impl.DomainRule;
+import dev.nightowl.mailjudge.rules.impl.LengthRule;
+import dev.nightowl.mailjudge.rules.impl.LocalPartRule;
+import dev.nightowl.mailjudge.rules.impl.SyntaxRule;
+import dev.nightowl.mailjudge.rules.impl.TldRule;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CompiledRulesetTest {
+
+    @Test
+    void testStandardRulesetIsFused() {
+        assertThat(Rulesets.standard().compile().isFused()).isTrue();
+        assertThat(Rulesets.noDisposable().compile().isFused()).isFalse();
+
+        Ruleset subclassed = Ruleset.builder().rule(new SyntaxRule() {
+        }).build();
+        assertThat(subclassed.compile().isFused()).isFalse();
+    }
+
+    @Test
+    void testFusedMatchesRuleByRule() {
+        Ruleset ruleset = Ruleset.builder()
+                .rule(new SyntaxRule())
+                .rule(new LengthRule())
+                .rule(new LocalPartRule())
+                .rule(new DomainRule())
+                .rule(new TldRule())
+                .rule(new LengthRule(10, 4, 6))
+                .rule(new TldRule(3))
+                .rule(new TldRule(0))
+                .build();
+        CompiledRuleset compiled = ruleset.compile();
+        assertThat(compiled.isFused()).isTrue();
+
+        Random random = new Random(42);
+        String alphabet = "aZ9.-_+@@..-x\u00e9";
+        for (int n = 0; n < 200_000; n++) {
+            StringBuilder sb = new StringBuilder();
+            int length = random.nextInt(14);
+            for (int i = 0; i < length; i++) {
+                sb.append(alphabet.charAt(random.nextInt(alphabet.length())));
+            }
+            String email = sb.toString();
+
+            List<String> expected = new ArrayList<>();
+            Rule firstFailure = null;
+            for (Rule rule : ruleset.getRules()) {
+                if (!rule.validate(email)) {
+                    expected.add(rule.getErrorMessage());
+                    if (firstFailure == null) {
+                        firstFailure = rule;
+                    }
+                }
+            }
+
+            assertThat(compiled.errors(email)).as(email).isEqualTo(expected);
+            assertThat(compiled.firstFailure(email)).as(email).isSameAs(firstFailure);
+            assertThat(compiled.validate(email)).as(email).isEqualTo(expected.isEmpty());
+        }
+    }
+
+    @Test
+    void testGeneratedMatchesInterpreted() {
+        Rule networkRule = new Rule() {
+            @Override
+            public boolean validate(String email) {
+                return !email.endsWith(".x");
+            }
+
+            @Override
+            public CostTier getCostTier() {
+                return CostTier.NETWORK;
+            }
+
+            @Override
+            public String getErrorMessage() {
+                return "Network";
+            }
+        };
+        Rule customRule = new Rule() {
+            @Override
+            public boolean validate(String email) {
+                return email.length() % 3 != 0;
+            }
+
+            @Override
+            public String getErrorMessage() {
+                return "Custom";
+            }
+        };
+        Ruleset.RulesetBuilder builder = Ruleset.builder()
+                .rule(networkRule)
+                .rule(new SyntaxRule())
+                .rule(new DisposableRule(Set.of("x.x", "a.x")))
+                .rule(customRule)
+                .rule(new LocalPartRule())
+                .rule(new DomainRule())
+                .rule(new TldRule(1));
+        CompiledRuleset interpreted = builder.build().compile();
+        CompiledRuleset generated = builder.inlineRules(true).build().compile();
+        assertThat(interpreted.isGenerated()).isFalse();
+        assertThat(generated.isGenerated()).isTrue();
+        assertThat(Ruleset.builder().rule(new SyntaxRule()).inlineRules(true).build().compile().isGenerated()).isFalse();
+
+        Random random = new Random(7);
+        String alphabet = "ax.@@.-";
+        for (int n = 0; n < 100_000; n++) {
+            StringBuilder sb = new StringBuilder();
+            int length = random.nextInt(10);
+            for (int i = 0; i < length; i++) {
+                sb.append(alphabet.charAt(random.nextInt(alphabet.length())));
+            }
+            String email = sb.toString();
+
+            assertThat(generated.failureMask(email, null)).as(email).isEqualTo(interpreted.failureMask(email, null));
+            assertThat(generated.firstFailure(email)).as(email).isSameAs(interpreted.firstFailure(email));
+            assertThat(generated.validate(email)).as(email).isEqualTo(interpreted.validate(email));
+        }
+    }
+
+    @Test
+    void testInterpretedFallback() {
+        CompiledRuleset compiled = Ruleset.builder()
+                .rule(new SyntaxRule())
+                .rule(new DisposableRule(Set.of("mailinator.com")))
+                .build()
+                .compile();
+
+        assertThat(compiled.isFused()).isFalse();
+        assertThat(compiled.validate("user@example.com")).isTrue();
+        assertThat(compiled.errors("user@Mailinator.com"))
+                .containsExactly("Disposable email addresses are not allowed");
+        assertThat(compiled.firstFailure("user@@mailinator.com")).isInstanceOf(SyntaxRule.class);
+    }
+
+    @Test
+    void testDomainVerdictCache() {
+        AtomicInteger calls = new AtomicInteger();
+        Rule countingRule = new Rule() {
+            @Override
+            public boolean validate(String email) {
+                calls.incrementAndGet();
+                return !email.toLowerCase().endsWith("@blocked.com");
+            }
+
+            @Override
+            public boolean isDomainScoped() {
+                return true;
+            }
+
+            @Override
+            public String getErrorMessage() {
+                return "Blocked";
+            }
+        };
+        CompiledRuleset compiled = Ruleset.builder()
+                .rule(new SyntaxRule())
+                .rule(new LocalPartRule())
+                .rule(countingRule)
+                .rule(new DisposableRule(Set.of("mailinator.com")))
+                .domainVerdictCacheSize(100)
+                .build()
+                .compile();
+
+        for (int i = 0; i < 100; i++) {
+            assertThat(compiled.validate("user" + i + "@example.com")).isTrue();
+            assertThat(compiled.firstFailure("user" + i + "@BLOCKED.com")).isSameAs(countingRule);
+        }
+        assertThat(calls.get()).isEqualTo(2);
+
+        // Quick validation stopped at the counting rule; the disposable verdict is filled in later
+        assertThat(compiled.errors("..@blocked.com"))
+                .containsExactly("Invalid local part format", "Blocked");
+        assertThat(compiled.errors("user@mailinator.com"))
+                .containsExactly("Disposable email addresses are not allowed");
+        assertThat(compiled.validate("user@Mailinator.com")).isFalse();
+        assertThat(compiled.validate("user")).isFalse();
+        assertThat(calls.get()).isEqualTo(3);
+    }
+
+    @Test
+    void testDomainVerdictCacheKeepsDistinctDomainsApart() {
+        AtomicInteger lookups = new AtomicInteger();
+        Rule lookupRule = new Rule() {
+            @Override
+            public boolean validate(String email) {
+                // Fails the first lookup, as a timed out query would
+                return lookups.incrementAndGet() > 1;
+            }
+
+            @Override
+            public boolean isDomainScoped() {
+                return true;
+            }
+
+            @Override
+            public CostTier getCostTier() {
+                return CostTier.NETWORK;
+            }
+
+            @Override
+            public String getErrorMessage() {
+                return "No MX";
+            }
+        };
+        CompiledRuleset compiled = Ruleset.builder()
+                .rule(new SyntaxRule())
+                .rule(new DomainRule())
+                .rule(new DisposableRule(Set.of("mailinator.com")))
+                .rule(lookupRule)
+                .domainVerdictCacheSize(100)
+                .build()
+                .compile();
+
+        assertThat(compiled.errors("u@kample.com")).containsExactly("No MX");
+        // Kelvin sign: folds to 'k' under toLowerCase(), but is not a valid domain character
+        assertThat(compiled.errors("u@\u212Aample.com")).containsExactly("Invalid domain format");
+        assertThat(compiled.errors("u@KAMPLE.com")).isEmpty();
+        assertThat(compiled.errorsAsync("u@kample.com").join()).isEmpty();
+        assertThat(lookups.get()).isEqualTo(3);
+    }
+
+    @Test
+    void testNetworkRulesRunLast() throws Exception {
+        AtomicInteger lookups = new AtomicInteger();
+        Set<String> lookupThreads = ConcurrentHashMap.newKeySet();
+        Rule lookupRule = new Rule() {
+            @Override
+            public boolean validate(String email) {
+                lookups.incrementAndGet();
+                lookupThreads.add(Thread.currentThread().getName());
+                return !email.endsWith("@nomx.com");
+            }
+
+            @Override
+            public CostTier getCostTier() {
+                return CostTier.NETWORK;
+            }
+
+            @Override
+            public String getErrorMessage() {
+                return "No MX";
+            }
+        };
+        Rule syntaxRule = new SyntaxRule();
+        Rule disposableRule = new DisposableRule(Set.of("mailinator.com"));
+        CompiledRuleset compiled = Ruleset.builder()
+                .rule(lookupRule)
+                .rule(disposableRule)
+                .rule(syntaxRule)
+                .build()
+                .compile();
+
+        assertThat(compiled.getRuleOrder()).containsExactly(syntaxRule, disposableRule, lookupRule);
+        assertThat(compiled.errors("user@@nomx.com")).containsExactly("Invalid email syntax");
+        assertThat(compiled.errors("user@mailinator.com"))
+                .containsExactly("Disposable email addresses are not allowed");
+        assertThat(compiled.firstFailure("user@@nomx.com")).isSameAs(syntaxRule);
+        assertThat(lookups.get()).isZero();
+
+        assertThat(compiled.errors("user@nomx.com")).containsExactly("No MX");
+        assertThat(lookups.get()).isEqualTo(1);
+
+        ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> new Thread(runnable, "lookups"));
+        try {
+            assertThat(compiled.errorsAsync("user@@nomx.com", executor).get()).containsExactly("Invalid email syntax");
+            assertThat(compiled.errorsAsync("user@nomx.com", executor).get()).containsExactly("No MX");
+            assertThat(compiled.errorsAsync("user@example.com", executor).get()).isEmpty();
+        } finally {
+            executor.shutdown();
+        }
+        assertThat(lookups.get()).isEqualTo(3);
+        assertThat(lookupThreads).containsExactlyInAnyOrder(Thread.currentThread().getName(), "lookups");
+    }
+
+    @Test
+    void testAdaptiveOrdering() {
+        Rule slowRule = new Rule() {
+            @Override
+            public boolean validate(String email) {
+                int hash = 0;
+                for (int i = 0; i < 20_000; i++) {
+                    hash = hash * 31 + email.charAt(i % email.length());
+                }
+                return hash != 42;
+            }
+
+            @Override
+            public String getErrorMessage() {
+                return "Slow";
+            }
+        };
+        AsyncRule ioRule = new AsyncRule() {
+            @Override
+            public CompletableFuture<Boolean> validateAsync(ParsedEmail email) {
+                return CompletableFuture.completedFuture(false);
+            }
+
+            @Override
+            public boolean validate(String email) {
+                return false;
+            }
+
+            @Override
+            public String getErrorMessage() {
+                return "I/O";
+            }
+        };
+        Rule dependentRule = new Rule() {
+            @Override
+            public boolean validate(String email) {
+                return false;
+            }
+
+            @Override
+            public Set<Class<? extends Rule>> getDependencies() {
+                return Set.of(SyntaxRule.class);
+            }
+
+            @Override
+            public String getErrorMessage() {
+                return "Dependent";
+            }
+        };
+        Rule syntaxRule = new SyntaxRule();
+        CompiledRuleset compiled = Ruleset.builder()
+                .rule(slowRule)
+                .rule(ioRule)
+                .rule(dependentRule)
+                .rule(syntaxRule)
+                .adaptiveOrdering(true)
+                .build()
+                .compile();
+
+        assertThat(compiled.getRuleOrder()).containsExactly(slowRule, dependentRule, syntaxRule, ioRule);
+        for (int i = 0; i < 50_000; i++) {
+            compiled.validate("user@@example.com");
+        }
+        assertThat(compiled.getRuleOrder()).containsExactly(syntaxRule, dependentRule, slowRule, ioRule);
+        assertThat(compiled.firstFailure("user@@example.com")).isSameAs(syntaxRule);
+        assertThat(compiled.errors("user@@example.com")).containsExactly("Dependent", "Invalid email syntax");
+    }
+}
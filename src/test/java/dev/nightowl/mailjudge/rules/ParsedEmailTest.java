@@ -0,0 +1,64 @@
+package dev.nightowl.mailjudge.rules;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Locale;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ParsedEmailTest {
+
+    @Test
+    void testOffsets() {
+        ParsedEmail email = ParsedEmail.parse("user.name@mail.Example.com");
+
+        assertThat(email.getAtIndex()).isEqualTo(9);
+        assertThat(email.getLastAtIndex()).isEqualTo(9);
+        assertThat(email.getFirstDomainDotIndex()).isEqualTo(14);
+        assertThat(email.getLastDotIndex()).isEqualTo(22);
+        assertThat(email.getLabelCount()).isEqualTo(3);
+        assertThat(email.getLocalPart()).isEqualTo("user.name");
+        assertThat(email.getDomain()).isEqualTo("mail.Example.com");
+        assertThat(email.getNormalizedDomain()).isEqualTo("mail.example.com");
+    }
+
+    @Test
+    void testNormalizedDomainFoldsAsciiOnly() {
+        Locale previous = Locale.getDefault();
+        Locale.setDefault(Locale.forLanguageTag("tr"));
+        try {
+            assertThat(ParsedEmail.parse("user@GMAIL.COM").getNormalizedDomain()).isEqualTo("gmail.com");
+            // Kelvin sign, which toLowerCase() would fold to 'k'
+            assertThat(ParsedEmail.parse("u@\u212AAMPLE.com").getNormalizedDomain()).isEqualTo("\u212Aample.com");
+        } finally {
+            Locale.setDefault(previous);
+        }
+    }
+
+    @Test
+    void testWithoutAt() {
+        ParsedEmail email = ParsedEmail.parse("no.at.sign");
+
+        assertThat(email.hasAt()).isFalse();
+        assertThat(email.getLastDotIndex()).isEqualTo(-1);
+        assertThat(email.getLabelCount()).isZero();
+        assertThat(email.getDomain()).isNull();
+    }
+
+    @Test
+    void testParsedPathMatchesStringPath() {
+        String[] emails = {
+                "user@example.com", "a@b.co", "user..name@example.com", ".user@example.com",
+                "user@@example.com", "user@exa@mple.com", "@example.com", "user@", "user@example",
+                "user@-example.com", "user@example-.com", "user@ex..ample.com", "user@example.c0m",
+                "user@example.c", "", "x"
+        };
+        for (Rule rule : Rulesets.standard().getRules()) {
+            for (String email : emails) {
+                assertThat(rule.validate(ParsedEmail.parse(email)))
+                        .as("%s on %s", rule.getClass().getSimpleName(), email)
+                        .isEqualTo(rule.validate(email));
+            }
+        }
+    }
+}
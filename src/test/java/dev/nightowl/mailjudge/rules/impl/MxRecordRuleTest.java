@@ -0,0 +1,237 @@
+package dev.nightowl.mailjudge.rules.impl;
+
+import dev.nightowl.mailjudge.MailJudge;
+import dev.nightowl.mailjudge.ValidationResult;
+import dev.nightowl.mailjudge.ValidationResults;
+import dev.nightowl.mailjudge.Verdict;
+import dev.nightowl.mailjudge.dns.LimitedMxResolver;
+import dev.nightowl.mailjudge.dns.MxRecords;
+import dev.nightowl.mailjudge.rules.ParsedEmail;
+import dev.nightowl.mailjudge.rules.Ruleset;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MxRecordRuleTest {
+
+    private StubDnsServer dns;
+
+    @BeforeEach
+    void startDns() throws Exception {
+        dns = new StubDnsServer()
+                .withMx("example.com", 300)
+                .withoutMx("nomx.com");
+    }
+
+    @AfterEach
+    void stopDns() {
+        dns.close();
+    }
+
+    @Test
+    void testLookup() {
+        MxRecordRule rule = new MxRecordRule(dns.resolver());
+
+        assertThat(rule.validate("user@example.com")).isTrue();
+        assertThat(rule.validate("user@EXAMPLE.com")).isTrue();
+        assertThat(rule.validate("user@nomx.com")).isFalse();
+        assertThat(rule.validate("user@missing.com")).isFalse();
+        assertThat(rule.validate("user")).isFalse();
+    }
+
+    @Test
+    void testValidateAsync() {
+        MailJudge judge = MailJudge.withRuleset(Ruleset.builder()
+                .rule(new SyntaxRule())
+                .rule(new MxRecordRule(dns.resolver()))
+                .build());
+
+        List<CompletableFuture<ValidationResult>> results = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            results.add(judge.validateAsync("user" + i + (i % 2 == 0 ? "@example.com" : "@missing.com")));
+        }
+
+        for (int i = 0; i < results.size(); i++) {
+            ValidationResult result = results.get(i).join();
+            assertThat(result.valid()).isEqualTo(i % 2 == 0);
+            if (i % 2 != 0) {
+                assertThat(result.errors()).containsExactly("Domain has no valid MX records");
+            }
+        }
+
+        // The lookup only runs once the cheaper rules pass
+        assertThat(judge.validateAsync("user@@missing.com").join().errors())
+                .containsExactly("Invalid email syntax");
+    }
+
+    @Test
+    void testAsyncDoesNotBlockCaller() {
+        dns.withDelay(Duration.ofSeconds(1));
+        MxRecordRule rule = new MxRecordRule(dns.resolver());
+
+        long start = System.nanoTime();
+        CompletableFuture<Boolean> pending = rule.validateAsync(ParsedEmail.parse("user@example.com"));
+        assertThat(System.nanoTime() - start).isLessThan(800_000_000L);
+        assertThat(pending.join()).isTrue();
+    }
+
+    @Test
+    void testBudget() {
+        dns.withDelay(Duration.ofSeconds(1));
+        MxRecordRule rule = new MxRecordRule(dns.resolver());
+        MailJudge judge = MailJudge.withRuleset(Ruleset.builder()
+                .rule(new SyntaxRule())
+                .rule(rule)
+                .build());
+
+        long start = System.nanoTime();
+        ValidationResult result = judge.validate("user@example.com", Duration.ofMillis(100));
+        assertThat(System.nanoTime() - start).isLessThan(800_000_000L);
+        assertThat(result.verdict()).isEqualTo(Verdict.INCONCLUSIVE);
+        assertThat(result.valid()).isFalse();
+
+        assertThat(judge.validate("user@@example.com", Duration.ofMillis(100)).verdict()).isEqualTo(Verdict.INVALID);
+
+        // The abandoned lookup was cancelled, so a later call looks the domain up again
+        assertThat(rule.validateAsync(ParsedEmail.parse("user@example.com")).join()).isTrue();
+        assertThat(judge.validate("user@example.com", Duration.ofMillis(100)).verdict()).isEqualTo(Verdict.VALID);
+    }
+
+    @Test
+    void testLookupIsCancelledWhenLastWaiterLeaves() {
+        List<CompletableFuture<MxRecords>> queries = new ArrayList<>();
+        LimitedMxResolver limited = new LimitedMxResolver(domain -> {
+            CompletableFuture<MxRecords> query = new CompletableFuture<>();
+            queries.add(query);
+            return query;
+        }, 1, 1, Duration.ZERO);
+        MxRecordRule rule = new MxRecordRule(limited);
+
+        CompletableFuture<Boolean> first = rule.validateAsync(ParsedEmail.parse("user@example.com"));
+        CompletableFuture<Boolean> second = rule.validateAsync(ParsedEmail.parse("other@example.com"),
+                Duration.ofMillis(50));
+        assertThat(queries).hasSize(1);
+
+        // The second waiter times out, the first keeps the query alive
+        assertThat(second).failsWithin(Duration.ofSeconds(1));
+        assertThat(queries.get(0)).isNotDone();
+
+        first.cancel(false);
+        assertThat(queries.get(0)).isCancelled();
+        assertThat(limited.getInFlight()).isZero();
+
+        // A new lookup takes the freed slot
+        CompletableFuture<Boolean> third = rule.validateAsync(ParsedEmail.parse("user@example.com"));
+        assertThat(queries).hasSize(2);
+        queries.get(1).complete(new MxRecords(List.of("mx.example.com"), 300));
+        assertThat(third.join()).isTrue();
+    }
+
+    @Test
+    void testVerdictsAreCached() {
+        MxRecordRule rule = new MxRecordRule(dns.resolver());
+
+        for (int i = 0; i < 10; i++) {
+            assertThat(rule.validate("user" + i + "@Example.com")).isTrue();
+            assertThat(rule.validate("user" + i + "@missing.com")).isFalse();
+            assertThat(rule.validate("user" + i + "@nomx.com")).isFalse();
+        }
+
+        assertThat(dns.getQueryCount()).isEqualTo(3);
+        assertThat(rule.getCache().getHitCount()).isEqualTo(27);
+        assertThat(rule.getCache().getMissCount()).isEqualTo(3);
+    }
+
+    @Test
+    void testConcurrentLookupsAreCoalesced() throws Exception {
+        dns.withDelay(Duration.ofMillis(300));
+        MxRecordRule rule = new MxRecordRule(dns.resolver());
+
+        List<CompletableFuture<Boolean>> results = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            results.add(rule.validateAsync(ParsedEmail.parse("user" + i + "@example.com")));
+        }
+        Thread[] threads = new Thread[8];
+        boolean[] blocking = new boolean[threads.length];
+        for (int i = 0; i < threads.length; i++) {
+            int index = i;
+            threads[i] = new Thread(() -> blocking[index] = rule.validate("user@example.com"));
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertThat(results).allMatch(CompletableFuture::join);
+        assertThat(blocking).containsOnly(true);
+        assertThat(dns.getQueryCount()).isEqualTo(1);
+    }
+
+    @Test
+    void testResolverThrowingDoesNotBlockLaterLookups() {
+        MxRecordRule rule = new MxRecordRule(domain -> {
+            throw new IllegalStateException("Resolver closed");
+        });
+
+        for (int i = 0; i < 2; i++) {
+            assertThat(rule.validateAsync(ParsedEmail.parse("user@example.com")))
+                    .failsWithin(Duration.ofSeconds(1));
+        }
+    }
+
+    @Test
+    void testRejectedLookupIsInconclusive() {
+        LimitedMxResolver limited = new LimitedMxResolver(domain -> new CompletableFuture<>(), 1, 1, Duration.ZERO);
+        MxRecordRule rule = new MxRecordRule(limited);
+        MailJudge judge = MailJudge.withRuleset(Ruleset.builder()
+                .rule(new SyntaxRule())
+                .rule(rule)
+                .build());
+        // Takes the only slot and never answers
+        rule.validateAsync(ParsedEmail.parse("user@example.com"));
+
+        assertThat(rule.validateAsync(ParsedEmail.parse("user@example.org")))
+                .failsWithin(Duration.ofSeconds(1))
+                .withThrowableOfType(ExecutionException.class)
+                .withCauseInstanceOf(RejectedExecutionException.class);
+        // The boolean paths cannot say unknown, and do not throw either
+        assertThat(rule.validate(ParsedEmail.parse("user@example.org"))).isFalse();
+        assertThat(judge.isValid("user@example.org")).isFalse();
+
+        assertThat(judge.validate("user@example.org").verdict()).isEqualTo(Verdict.INCONCLUSIVE);
+        assertThat(judge.validateQ("user@example.org").verdict()).isEqualTo(Verdict.INCONCLUSIVE);
+        assertThat(judge.validateAsync("user@example.org").join().verdict()).isEqualTo(Verdict.INCONCLUSIVE);
+        assertThat(judge.validate("user@example.org", Duration.ofMillis(100)).verdict())
+                .isEqualTo(Verdict.INCONCLUSIVE);
+
+        // In a batch only the rows of the failed domain are inconclusive
+        rule.getCache().putPositive("example.net", 300);
+        List<String> batch = List.of("user@example.org", "user@example.net", "user@@example.org");
+        assertThat(judge.validateAll(batch)).extracting(ValidationResult::verdict)
+                .containsExactly(Verdict.INCONCLUSIVE, Verdict.VALID, Verdict.INVALID);
+        ValidationResults compact = judge.validateAllCompact(batch);
+        assertThat(compact.getCode(0)).isEqualTo(ValidationResults.INCONCLUSIVE);
+        assertThat(compact.get(0).verdict()).isEqualTo(Verdict.INCONCLUSIVE);
+        assertThat(compact.validCount()).isEqualTo(1);
+        assertThat(compact.inconclusiveCount()).isEqualTo(1);
+        assertThat(compact.invalidCount()).isEqualTo(1);
+
+        assertThat(rule.getCache().peek("example.org")).isNull();
+    }
+
+    @Test
+    void testDefaultRulesShareLimiter() {
+        assertThat(new MxRecordRule().getResolver())
+                .isSameAs(new MxRecordRule().getResolver())
+                .isSameAs(LimitedMxResolver.getDefault());
+    }
+}
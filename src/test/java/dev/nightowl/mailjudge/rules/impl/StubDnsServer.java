@@ -0,0 +1,120 @@
+package dev.nightowl.mailjudge.rules.impl;
+
+import org.xbill.DNS.DClass;
+import org.xbill.DNS.Flags;
+import org.xbill.DNS.MXRecord;
+import org.xbill.DNS.Message;
+import org.xbill.DNS.Name;
+import org.xbill.DNS.Rcode;
+import org.xbill.DNS.Record;
+import org.xbill.DNS.Section;
+import org.xbill.DNS.SimpleResolver;
+import org.xbill.DNS.Type;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Minimal UDP DNS server on the loopback interface for tests.
+ * Domains with MX records answer with them, known domains without MX records answer NOERROR
+ * with an empty answer, and everything else answers NXDOMAIN.
+ */
+public class StubDnsServer implements AutoCloseable {
+    private final DatagramSocket socket;
+    private final Thread thread;
+    private final Map<String, Long> mxDomains = new ConcurrentHashMap<>();
+    private final Set<String> domainsWithoutMx = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger queries = new AtomicInteger();
+    private volatile long delayMillis;
+
+    public StubDnsServer() throws SocketException {
+        this.socket = new DatagramSocket(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        this.thread = new Thread(this::serve, "stub-dns-" + socket.getLocalPort());
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    public StubDnsServer withMx(String domain, long ttl) {
+        mxDomains.put(domain.toLowerCase(), ttl);
+        return this;
+    }
+
+    public StubDnsServer withoutMx(String domain) {
+        domainsWithoutMx.add(domain.toLowerCase());
+        return this;
+    }
+
+    public StubDnsServer withDelay(Duration delay) {
+        this.delayMillis = delay.toMillis();
+        return this;
+    }
+
+    public int getQueryCount() {
+        return queries.get();
+    }
+
+    public InetSocketAddress getAddress() {
+        return (InetSocketAddress) socket.getLocalSocketAddress();
+    }
+
+    public SimpleResolver resolver() {
+        SimpleResolver resolver = new SimpleResolver(getAddress());
+        resolver.setTimeout(Duration.ofSeconds(2));
+        return resolver;
+    }
+
+    private void serve() {
+        byte[] buffer = new byte[512];
+        while (!socket.isClosed()) {
+            try {
+                DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+                socket.receive(packet);
+                queries.incrementAndGet();
+                byte[] response = answer(new Message(packet.getData())).toWire();
+                long delay = delayMillis;
+                if (delay > 0) {
+                    Thread.sleep(delay);
+                }
+                socket.send(new DatagramPacket(response, response.length, packet.getSocketAddress()));
+            } catch (IOException e) {
+                // Closed or malformed query
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private Message answer(Message query) throws IOException {
+        Record question = query.getQuestion();
+        Message response = new Message(query.getHeader().getID());
+        response.getHeader().setFlag(Flags.QR);
+        response.getHeader().setFlag(Flags.AA);
+        response.addRecord(question, Section.QUESTION);
+
+        Name name = question.getName();
+        String domain = name.toString(true).toLowerCase();
+        Long ttl = mxDomains.get(domain);
+        if (ttl != null && question.getType() == Type.MX) {
+            response.addRecord(new MXRecord(name, DClass.IN, ttl, 10, Name.fromString("mx." + domain + ".")),
+                    Section.ANSWER);
+        } else if (ttl == null && !domainsWithoutMx.contains(domain)) {
+            response.getHeader().setRcode(Rcode.NXDOMAIN);
+        }
+        return response;
+    }
+
+    @Override
+    public void close() {
+        socket.close();
+        thread.interrupt();
+    }
+}
@@ -0,0 +1,223 @@
+package dev.nightowl.mailjudge.util;
+
+import com.sun.net.httpserver.HttpServer;
+import dev.nightowl.mailjudge.rules.impl.DisposableRule;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DisposableListRefresherTest {
+    private HttpServer server;
+    private volatile String body = "mailinator.com\n";
+    private volatile String etag = "\"v1\"";
+    private volatile CountDownLatch release = new CountDownLatch(0);
+    private final AtomicInteger downloads = new AtomicInteger();
+    private final AtomicInteger notModified = new AtomicInteger();
+
+    @TempDir
+    Path cacheDir;
+
+    @BeforeEach
+    void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/list.conf", exchange -> {
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                notModified.incrementAndGet();
+                exchange.sendResponseHeaders(304, -1);
+                exchange.close();
+                return;
+            }
+            downloads.incrementAndGet();
+            byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("ETag", etag);
+            exchange.sendResponseHeaders(200, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        });
+        server.start();
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.stop(0);
+    }
+
+    private DisposableListRefresher newRefresher() {
+        String url = "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort()
+                + "/list.conf";
+        return new DisposableListRefresher(url, cacheDir, Duration.ofDays(7));
+    }
+
+    @Test
+    void testConditionalRefresh() throws IOException {
+        try (DisposableListRefresher refresher = newRefresher()) {
+            assertThat(refresher.getIndex().contains("mailinator.com")).isTrue();
+            assertThat(Files.readAllLines(cacheDir.resolve("disposable-domains.txt")))
+                    .containsExactly("mailinator.com");
+
+            assertThat(refresher.refresh()).isFalse();
+            assertThat(downloads.get()).isEqualTo(1);
+            assertThat(notModified.get()).isEqualTo(1);
+
+            body = "mailinator.com\nyopmail.com\n";
+            etag = "\"v2\"";
+            DomainIndex before = refresher.getIndex();
+            assertThat(refresher.refresh()).isTrue();
+            assertThat(refresher.getIndex()).isNotSameAs(before);
+            assertThat(refresher.getIndex().contains("yopmail.com")).isTrue();
+            assertThat(downloads.get()).isEqualTo(2);
+        }
+    }
+
+    @Test
+    void testStartsFromSnapshot() {
+        try (DisposableListRefresher refresher = newRefresher()) {
+            refresher.getIndex();
+        }
+        assertThat(cacheDir.resolve("disposable-domains.idx")).exists();
+
+        server.stop(0);
+        try (DisposableListRefresher refresher = newRefresher()) {
+            assertThat(refresher.getIndex().contains("mailinator.com")).isTrue();
+        }
+        assertThat(downloads.get()).isEqualTo(1);
+    }
+
+    @Test
+    void testStartsFromEmbeddedSnapshot() throws Exception {
+        Path list = cacheDir.resolve("list.conf");
+        Files.write(list, List.of("# baked", "trashmail.com"));
+        Path baked = cacheDir.resolve("baked.idx");
+        DomainIndex.of(Files.readAllLines(list)).writeTo(baked);
+        DomainIndex embedded = DomainIndex.fromSnapshot(ByteBuffer.wrap(Files.readAllBytes(baked)));
+
+        Path offlineDir = cacheDir.resolve("offline");
+        try (DisposableListRefresher refresher =
+                     new DisposableListRefresher(null, offlineDir, Duration.ofDays(7), embedded)) {
+            assertThat(refresher.getIndex()).isSameAs(embedded);
+            assertThat(refresher.getIndex().contains("trashmail.com")).isTrue();
+        }
+        assertThat(downloads.get()).isZero();
+
+        // With a URL, the embedded list is served at once and the download replaces it in the background
+        release = new CountDownLatch(1);
+        String url = newRefresher().getUrl();
+        try (DisposableListRefresher refresher =
+                     new DisposableListRefresher(url, cacheDir, Duration.ofDays(7), embedded)) {
+            assertThat(refresher.getIndex()).isSameAs(embedded);
+            release.countDown();
+
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (refresher.getIndex() == embedded && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            assertThat(refresher.getIndex().contains("mailinator.com")).isTrue();
+        }
+    }
+
+    @Test
+    void testLookupsDoNotWaitForRefresh() throws Exception {
+        try (DisposableListRefresher refresher = newRefresher()) {
+            DisposableRule rule = new DisposableRule(refresher);
+            assertThat(rule.validate("user@yopmail.com")).isTrue();
+
+            body = "yopmail.com\n";
+            etag = "\"v2\"";
+            release = new CountDownLatch(1);
+            Thread refresh = new Thread(() -> {
+                try {
+                    refresher.refresh();
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            });
+            refresh.start();
+
+            // The server holds the download; lookups keep answering from the current list
+            assertThat(rule.validate("user@mailinator.com")).isFalse();
+            assertThat(rule.validate("user@yopmail.com")).isTrue();
+
+            release.countDown();
+            refresh.join(5000);
+            assertThat(rule.validate("user@yopmail.com")).isFalse();
+            assertThat(rule.validate("user@mailinator.com")).isTrue();
+        }
+    }
+
+    @Test
+    void testConcurrentRefreshesDownloadOnce() throws Exception {
+        try (DisposableListRefresher refresher = newRefresher()) {
+            refresher.getIndex();
+
+            body = "yopmail.com\n";
+            etag = "\"v2\"";
+            release = new CountDownLatch(1);
+            boolean[] published = new boolean[2];
+            Thread[] threads = new Thread[2];
+            for (int i = 0; i < threads.length; i++) {
+                int index = i;
+                threads[i] = new Thread(() -> {
+                    try {
+                        published[index] = refresher.refresh();
+                    } catch (IOException e) {
+                        throw new RuntimeException(e);
+                    }
+                });
+                threads[i].start();
+            }
+
+            // Both refreshes are waiting: one on the server, the other on the first
+            Thread.sleep(200);
+            release.countDown();
+            for (Thread thread : threads) {
+                thread.join(5000);
+            }
+            assertThat(published).containsExactlyInAnyOrder(true, false);
+            assertThat(downloads.get()).isEqualTo(2);
+            assertThat(refresher.getIndex().contains("yopmail.com")).isTrue();
+        }
+    }
+
+    @Test
+    void testStaleCacheIsServedWhileRefreshing() throws Exception {
+        Path cacheFile = cacheDir.resolve("disposable-domains.txt");
+        Files.write(cacheFile, List.of("trashmail.com"));
+        Files.setLastModifiedTime(cacheFile, FileTime.from(Instant.now().minus(Duration.ofDays(30))));
+
+        try (DisposableListRefresher refresher = newRefresher()) {
+            assertThat(refresher.getIndex().contains("trashmail.com")).isTrue();
+
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (!refresher.getIndex().contains("mailinator.com") && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            assertThat(refresher.getIndex().contains("mailinator.com")).isTrue();
+            assertThat(refresher.getIndex().contains("trashmail.com")).isFalse();
+        }
+    }
+}
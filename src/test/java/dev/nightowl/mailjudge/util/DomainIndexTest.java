@@ -0,0 +1,136 @@
+package dev.nightowl.mailjudge.util;
+
+import dev.nightowl.mailjudge.rules.impl.DisposableRule;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class DomainIndexTest {
+
+    @Test
+    void testLookup() {
+        DomainIndex index = DomainIndex.of(List.of("mailinator.com", " YopMail.com ", "# comment", "",
+                "m\u00fcll.de", "\ud83d\udce7.example"));
+
+        assertThat(index.size()).isEqualTo(4);
+        assertThat(index.contains("mailinator.com")).isTrue();
+        assertThat(index.contains("MAILINATOR.COM")).isTrue();
+        assertThat(index.contains("yopmail.com")).isTrue();
+        assertThat(index.contains("M\u00dcLL.de")).isTrue();
+        assertThat(index.contains("\ud83d\udce7.example")).isTrue();
+        assertThat(index.contains("mailinator.co")).isFalse();
+        assertThat(index.contains("x.mailinator.com")).isFalse();
+        assertThat(index.contains("")).isFalse();
+
+        String email = "user@Mailinator.com";
+        assertThat(index.contains(email, 5, email.length())).isTrue();
+        assertThat(index.contains(email, 6, email.length())).isFalse();
+    }
+
+    @Test
+    void testManyDomains() {
+        List<String> domains = new ArrayList<>();
+        for (int i = 0; i < 50_000; i++) {
+            domains.add("disposable" + i + ".com");
+        }
+        DomainIndex index = DomainIndex.of(domains);
+
+        for (int i = 0; i < 50_000; i++) {
+            assertThat(index.contains("disposable" + i + ".com")).isTrue();
+            assertThat(index.contains("disposable" + i + ".net")).isFalse();
+        }
+        assertThat(index.toSet()).isEqualTo(new HashSet<>(domains));
+    }
+
+    @Test
+    void testSuffixLookup() {
+        DomainIndex index = DomainIndex.of(List.of("mailinator.com", "mx.guerrillamail.com", "guerrillamail.com"));
+
+        assertThat(index.size()).isEqualTo(3);
+        assertThat(index.contains("com")).isFalse();
+        assertThat(index.toSet()).containsExactlyInAnyOrder(
+                "mailinator.com", "mx.guerrillamail.com", "guerrillamail.com");
+
+        String email = "user@a.MX.guerrillamail.com";
+        assertThat(index.findLongestListedSuffix(email, 5, email.length())).isEqualTo(7);
+        assertThat(index.findLongestListedSuffix("x.mailinator.com", 0, 16)).isEqualTo(2);
+        assertThat(index.findLongestListedSuffix("mailinator.com", 0, 14)).isEqualTo(0);
+        assertThat(index.containsOrParent("xmailinator.com", 0, 15)).isFalse();
+        assertThat(index.containsOrParent("example.com", 0, 11)).isFalse();
+        assertThat(index.containsOrParent("mailinator.com.evil", 0, 19)).isFalse();
+        assertThat(index.containsOrParent("com", 0, 3)).isFalse();
+    }
+
+    @Test
+    void testSnapshot(@TempDir Path dir) throws IOException {
+        DomainIndex index = DomainIndex.of(List.of("mailinator.com", "m\u00fcll.de", "yopmail.com"));
+        Path snapshot = dir.resolve("domains.idx");
+        index.writeTo(snapshot);
+
+        DomainIndex loaded = DomainIndex.load(snapshot);
+        assertThat(loaded.size()).isEqualTo(3);
+        assertThat(loaded.contains("YOPMAIL.com")).isTrue();
+        assertThat(loaded.contains("M\u00dcLL.de")).isTrue();
+        assertThat(loaded.containsOrParent("x.mailinator.com", 0, 16)).isTrue();
+        assertThat(loaded.toSet()).isEqualTo(index.toSet());
+
+        // Overwriting a mapped snapshot leaves the loaded index intact
+        DomainIndex.of(List.of("example.org")).writeTo(snapshot);
+        assertThat(loaded.contains("yopmail.com")).isTrue();
+        assertThat(DomainIndex.load(snapshot).toSet()).containsExactly("example.org");
+
+        Files.write(dir.resolve("domains.txt"), List.of("mailinator.com"));
+        assertThatThrownBy(() -> DomainIndex.load(dir.resolve("domains.txt"))).isInstanceOf(IOException.class);
+    }
+
+    @Test
+    void testCorruptSnapshotIsRejected(@TempDir Path dir) throws IOException {
+        List<String> domains = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            domains.add("domain" + i + ".com");
+        }
+        Path snapshot = dir.resolve("domains.idx");
+        DomainIndex.of(domains).writeTo(snapshot);
+        byte[] bytes = Files.readAllBytes(snapshot);
+
+        // Truncated data region: the table is intact but its last entries point past the end
+        Files.write(snapshot, Arrays.copyOf(bytes, bytes.length - 20));
+        assertThatThrownBy(() -> DomainIndex.load(snapshot)).isInstanceOf(IOException.class);
+
+        // The last entry's length running past the data region
+        int tableSize = ByteBuffer.wrap(bytes).getInt(16);
+        int last = 20 + tableSize * 8;
+        for (int p = last; p < bytes.length; p += 2 + (bytes[p] & 0xFF)) {
+            last = p;
+        }
+        byte[] corrupt = bytes.clone();
+        corrupt[last] = (byte) 0xFF;
+        assertThatThrownBy(() -> DomainIndex.fromSnapshot(ByteBuffer.wrap(corrupt))).isInstanceOf(IOException.class);
+    }
+
+    @Test
+    void testDisposableRule() {
+        DisposableRule rule = new DisposableRule(Set.of("mailinator.com"));
+
+        assertThat(rule.validate("user@example.com")).isTrue();
+        assertThat(rule.validate("user@MailInator.com")).isFalse();
+        assertThat(rule.validate("user")).isFalse();
+        assertThat(rule.validate("user@x.mailinator.com")).isFalse();
+
+        DisposableRule exact = new DisposableRule(DomainIndex.of(Set.of("mailinator.com")), false);
+        assertThat(exact.validate("user@mailinator.com")).isFalse();
+        assertThat(exact.validate("user@x.mailinator.com")).isTrue();
+    }
+}